@@ -0,0 +1,9 @@
+#!/usr/bin/env bash
+# Runs the JMH benchmarks in src/test/java/**/bench, arguments are passed to JMH.
+# Usage: bench/jmh.sh [benchmark regex] [jmh options]
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+mvn -q -B test-compile dependency:build-classpath \
+    -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" org.openjdk.jmh.Main "$@"
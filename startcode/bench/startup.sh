@@ -0,0 +1,30 @@
+#!/usr/bin/env bash
+# Startup benchmark: time to first output for one small file.
+# Build first with: mvn package -Pcds -DskipTests
+# Usage: bench/startup.sh [runs]
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-20}
+INPUT=src/test/resources/level0.icss
+FULL=$(ls target/icsstool-*-jar-with-dependencies.jar)
+HEADLESS=$(ls target/icsstool-*-headless.jar)
+ARCHIVE=target/icss-headless.jsa
+
+measure() {
+    local label=$1
+    shift
+    local total=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start=$(date +%s%N)
+        "$@" "$INPUT" > /dev/null
+        local end=$(date +%s%N)
+        total=$((total + end - start))
+    done
+    printf "%-28s %6d ms\n" "$label" $((total / RUNS / 1000000))
+}
+
+measure "fat jar" java -cp "$FULL" nl.han.ica.icss.cli.Main
+measure "headless jar" java -jar "$HEADLESS"
+measure "headless jar + CDS archive" java -XX:SharedArchiveFile="$ARCHIVE" -jar "$HEADLESS"
+measure "headless + CDS + TieredStop" java -XX:SharedArchiveFile="$ARCHIVE" -XX:TieredStopAtLevel=1 -jar "$HEADLESS"
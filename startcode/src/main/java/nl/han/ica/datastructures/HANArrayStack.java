@@ -0,0 +1,138 @@
+package nl.han.ica.datastructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stack on a plain array. Unlike HANStack there is no list in between, the array grows
+ * by half its size when full and clear() keeps it, so the stack can be reused without allocating.
+ */
+public class HANArrayStack<T> implements IHANStack<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    //Some VMs reserve header words in an array
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private Object[] elements;
+    private int size;
+
+    public HANArrayStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of values that fit before the array has to grow
+     */
+    public HANArrayStack(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capaciteit mag niet negatief zijn: " + initialCapacity);
+        }
+        this.elements = new Object[initialCapacity];
+    }
+
+    @Override
+    public void push(T value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Kan niet pop() uitvoeren op een lege stack");
+        }
+        T value = (T) elements[--size];
+        elements[size] = null;
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        if (size == 0) {
+            throw new IllegalStateException("Kan niet peek() uitvoeren op een lege stack");
+        }
+        return (T) elements[size - 1];
+    }
+
+    /**
+     * Pushes all values in iteration order, so the last value ends up on top.
+     * The array grows at most once.
+     * @param values values to push
+     */
+    public void pushAll(Collection<? extends T> values) {
+        Object[] added = values.toArray();
+        ensureCapacity(size + added.length);
+        System.arraycopy(added, 0, elements, size, added.length);
+        size += added.length;
+    }
+
+    /**
+     * Pops the top n values. They are returned in the order they were pushed,
+     * so pushAll(popN(n)) leaves the stack as it was.
+     * @param n number of values to pop
+     * @return the popped values, the former top of the stack last
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> popN(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Aantal mag niet negatief zijn: " + n);
+        }
+        if (n > size) {
+            throw new IllegalStateException("Kan niet popN(" + n + ") uitvoeren op een stack met " + size + " elementen");
+        }
+        int from = size - n;
+        List<T> popped = new ArrayList<>(n);
+        for (int i = from; i < size; i++) {
+            popped.add((T) elements[i]);
+            elements[i] = null;
+        }
+        size = from;
+        return popped;
+    }
+
+    /**
+     * Removes all values but keeps the array, so pushing the same number of values again does not allocate
+     */
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    /**
+     * Grows the array so that at least minCapacity values fit
+     * @param minCapacity the number of values that should fit
+     */
+    public void ensureCapacity(int minCapacity) {
+        //A negative capacity means the size overflowed
+        if (minCapacity < 0 || minCapacity > elements.length) {
+            grow(minCapacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("Stack kan niet groter worden dan " + MAX_CAPACITY + " elementen");
+        }
+        long newCapacity = Math.min(elements.length + (elements.length >> 1) + 1L, MAX_CAPACITY);
+        elements = Arrays.copyOf(elements, (int) Math.max(newCapacity, minCapacity));
+    }
+}
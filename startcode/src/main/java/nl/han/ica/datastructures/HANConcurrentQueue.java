@@ -0,0 +1,241 @@
+package nl.han.ica.datastructures;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for any number of producer and consumer threads, without locks.
+ *
+ * Every slot of the ring buffer has a sequence number that tells whose turn it is:
+ * a producer may fill slot i at position p when its sequence is p, a consumer may empty it
+ * when the sequence is p + 1. Producers and consumers claim positions with a compare-and-set
+ * on the tail and head counters, after that only the owner of a slot touches it.
+ *
+ * The queue cannot hold null, poll() uses it to report an empty queue.
+ */
+public class HANConcurrentQueue<T> implements IHANQueue<T> {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    //Head and tail live 16 longs apart, so producers and consumers do not share a cache line
+    private static final int HEAD = 7;
+    private static final int TAIL = 23;
+
+    //Park times when waiting in take() and put(), growing from the minimum to the maximum
+    private static final long MIN_PARK_NANOS = 1_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    private static final int SPINS = 64;
+
+    private final Object[] values;
+    private final long[] sequences;
+    private final long[] counters = new long[31];
+    private final int mask;
+
+    /**
+     * @param capacity maximum number of values in the queue, rounded up to a power of two of at least 2
+     */
+    public HANConcurrentQueue(int capacity) {
+        if (capacity < 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capaciteit moet tussen 0 en " + (1 << 30) + " liggen: " + capacity);
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        values = new Object[size];
+        sequences = new long[size];
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a value without waiting
+     * @param value value to add
+     * @return false when the queue is full
+     */
+    public boolean offer(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Een queue kan geen null bevatten");
+        }
+        long position = (long) LONGS.getVolatile(counters, TAIL);
+        while (true) {
+            int index = (int) position & mask;
+            long difference = (long) LONGS.getAcquire(sequences, index) - position;
+            if (difference == 0) {
+                if (LONGS.compareAndSet(counters, TAIL, position, position + 1)) {
+                    values[index] = value;
+                    LONGS.setRelease(sequences, index, position + 1);
+                    return true;
+                }
+                position = (long) LONGS.getVolatile(counters, TAIL);
+            } else if (difference < 0) {
+                //The slot still holds the value of the previous round
+                return false;
+            } else {
+                position = (long) LONGS.getVolatile(counters, TAIL);
+            }
+        }
+    }
+
+    /**
+     * Removes the value at the front without waiting
+     * @return the value, or null when the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = (long) LONGS.getVolatile(counters, HEAD);
+        while (true) {
+            int index = (int) position & mask;
+            long difference = (long) LONGS.getAcquire(sequences, index) - (position + 1);
+            if (difference == 0) {
+                if (LONGS.compareAndSet(counters, HEAD, position, position + 1)) {
+                    T value = (T) values[index];
+                    values[index] = null;
+                    LONGS.setRelease(sequences, index, position + mask + 1);
+                    return value;
+                }
+                position = (long) LONGS.getVolatile(counters, HEAD);
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = (long) LONGS.getVolatile(counters, HEAD);
+            }
+        }
+    }
+
+    /**
+     * Adds a value, waits while the queue is full
+     * @param value value to add
+     * @throws InterruptedException when the thread is interrupted while waiting
+     */
+    public void put(T value) throws InterruptedException {
+        long park = MIN_PARK_NANOS;
+        for (int attempt = 0; !offer(value); attempt++) {
+            park = pause(attempt, park);
+        }
+    }
+
+    /**
+     * Removes the value at the front, waits while the queue is empty
+     * @return the value at the front
+     * @throws InterruptedException when the thread is interrupted while waiting
+     */
+    public T take() throws InterruptedException {
+        long park = MIN_PARK_NANOS;
+        T value;
+        for (int attempt = 0; (value = poll()) == null; attempt++) {
+            park = pause(attempt, park);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value at the front, waits at most the given time while the queue is empty
+     * @return the value, or null when the time ran out
+     * @throws InterruptedException when the thread is interrupted while waiting
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long park = MIN_PARK_NANOS;
+        T value;
+        for (int attempt = 0; (value = poll()) == null; attempt++) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            park = pause(attempt, park);
+        }
+        return value;
+    }
+
+    //Spins first, a waiting producer or consumer is usually served within microseconds
+    private static long pause(int attempt, long park) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+            return park;
+        }
+        LockSupport.parkNanos(park);
+        return Math.min(park << 1, MAX_PARK_NANOS);
+    }
+
+    /**
+     * Removes the values that are in the queue now. Values added meanwhile by other threads may stay.
+     */
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            //drain
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    /**
+     * Adds a value without waiting
+     * @param value value to add
+     * @throws IllegalStateException when the queue is full
+     */
+    @Override
+    public void enqueue(T value) {
+        if (!offer(value)) {
+            throw new IllegalStateException("Kan niet enqueue() uitvoeren op een volle queue");
+        }
+    }
+
+    @Override
+    public T dequeue() {
+        T value = poll();
+        if (value == null) {
+            throw new IllegalStateException("Kan niet dequeue() uitvoeren op een lege queue");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value at the front without removing it. Other consumers may take it
+     * right after, so the value is only a snapshot.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        while (true) {
+            long position = (long) LONGS.getVolatile(counters, HEAD);
+            int index = (int) position & mask;
+            if ((long) LONGS.getAcquire(sequences, index) != position + 1) {
+                if ((long) LONGS.getVolatile(counters, HEAD) == position) {
+                    throw new IllegalStateException("Kan niet peek() uitvoeren op een lege queue");
+                }
+                continue;
+            }
+            Object value = values[index];
+            //The value is only valid when no consumer took the slot while reading it
+            if (value != null && (long) LONGS.getVolatile(counters, HEAD) == position) {
+                return (T) value;
+            }
+        }
+    }
+
+    /**
+     * Number of values in the queue. While other threads are adding or removing values it is an estimate.
+     */
+    @Override
+    public int getSize() {
+        while (true) {
+            long head = (long) LONGS.getVolatile(counters, HEAD);
+            long tail = (long) LONGS.getVolatile(counters, TAIL);
+            if ((long) LONGS.getVolatile(counters, HEAD) == head) {
+                return (int) Math.max(0, Math.min(tail - head, values.length));
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+}
@@ -0,0 +1,240 @@
+package nl.han.ica.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Unrolled linked list: every node holds a small array of values instead of a single value.
+ * Walking the list touches one node per CHUNK_SIZE values, and adding or removing at either
+ * end is O(1) because the values in a node are kept between a start and an end offset.
+ */
+public class HANLinkedList<T> implements IHANLinkedList<T> {
+
+    static final int CHUNK_SIZE = 32;
+
+    private static class Chunk {
+        final Object[] values = new Object[CHUNK_SIZE];
+        int start;
+        int end;
+        Chunk previous;
+        Chunk next;
+
+        Chunk(int offset) {
+            start = offset;
+            end = offset;
+        }
+
+        int count() {
+            return end - start;
+        }
+    }
+
+    private Chunk first;
+    private Chunk last;
+    private int size;
+
+    @Override
+    public void addFirst(T value) {
+        if (first == null || first.start == 0) {
+            //A new first chunk is filled from the back, so the following addFirst calls fit as well
+            linkBefore(new Chunk(CHUNK_SIZE), first);
+        }
+        first.values[--first.start] = value;
+        size++;
+    }
+
+    /**
+     * Adds value to the end of the list in O(1)
+     * @param value generic value to be added
+     */
+    public void addLast(T value) {
+        if (last == null || last.end == CHUNK_SIZE) {
+            linkAfter(new Chunk(0), last);
+        }
+        last.values[last.end++] = value;
+        size++;
+    }
+
+    @Override
+    public void clear() {
+        first = null;
+        last = null;
+        size = 0;
+    }
+
+    @Override
+    public void insert(int index, T value) {
+        if (index < 0 || index > size) {
+            throw outOfBounds(index);
+        }
+        if (index == 0) {
+            addFirst(value);
+            return;
+        }
+        if (index == size) {
+            addLast(value);
+            return;
+        }
+
+        Chunk chunk = first;
+        int offset = index;
+        while (offset > chunk.count()) {
+            offset -= chunk.count();
+            chunk = chunk.next;
+        }
+
+        if (chunk.end == CHUNK_SIZE && chunk.start == 0) {
+            split(chunk);
+            if (offset > chunk.count()) {
+                offset -= chunk.count();
+                chunk = chunk.next;
+            }
+        }
+
+        int position = chunk.start + offset;
+        if (chunk.end < CHUNK_SIZE) {
+            System.arraycopy(chunk.values, position, chunk.values, position + 1, chunk.end - position);
+            chunk.end++;
+        } else {
+            System.arraycopy(chunk.values, chunk.start, chunk.values, chunk.start - 1, offset);
+            chunk.start--;
+            position--;
+        }
+        chunk.values[position] = value;
+        size++;
+    }
+
+    @Override
+    public void delete(int pos) {
+        if (pos < 0 || pos >= size) {
+            throw outOfBounds(pos);
+        }
+        Chunk chunk = first;
+        int offset = pos;
+        while (offset >= chunk.count()) {
+            offset -= chunk.count();
+            chunk = chunk.next;
+        }
+
+        int position = chunk.start + offset;
+        System.arraycopy(chunk.values, position + 1, chunk.values, position, chunk.end - position - 1);
+        chunk.values[--chunk.end] = null;
+        size--;
+        if (chunk.count() == 0) {
+            unlink(chunk);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int pos) {
+        if (pos < 0 || pos >= size) {
+            throw outOfBounds(pos);
+        }
+        if (pos >= size / 2) {
+            //Count back from the end
+            int offset = size - pos;
+            Chunk chunk = last;
+            while (offset > chunk.count()) {
+                offset -= chunk.count();
+                chunk = chunk.previous;
+            }
+            return (T) chunk.values[chunk.end - offset];
+        }
+        Chunk chunk = first;
+        int offset = pos;
+        while (offset >= chunk.count()) {
+            offset -= chunk.count();
+            chunk = chunk.next;
+        }
+        return (T) chunk.values[chunk.start + offset];
+    }
+
+    @Override
+    public void removeFirst() {
+        if (size == 0) {
+            throw new IllegalStateException("Kan niet removeFirst() uitvoeren op een lege lijst");
+        }
+        first.values[first.start++] = null;
+        size--;
+        if (first.count() == 0) {
+            unlink(first);
+        }
+    }
+
+    /**
+     * Returns first element in O(1) time
+     * @return first element
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getFirst() {
+        if (size == 0) {
+            throw new IllegalStateException("Kan niet getFirst() uitvoeren op een lege lijst");
+        }
+        return (T) first.values[first.start];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //Moves the upper half of a full chunk to a new chunk after it
+    private void split(Chunk chunk) {
+        int half = CHUNK_SIZE / 2;
+        Chunk upper = new Chunk(0);
+        System.arraycopy(chunk.values, half, upper.values, 0, CHUNK_SIZE - half);
+        Arrays.fill(chunk.values, half, CHUNK_SIZE, null);
+        upper.end = CHUNK_SIZE - half;
+        chunk.end = half;
+        linkAfter(upper, chunk);
+    }
+
+    private void linkBefore(Chunk chunk, Chunk successor) {
+        chunk.next = successor;
+        if (successor == null) {
+            chunk.previous = last;
+            if (last != null) {
+                last.next = chunk;
+            }
+            last = chunk;
+        } else {
+            chunk.previous = successor.previous;
+            successor.previous = chunk;
+        }
+        if (chunk.previous == null) {
+            first = chunk;
+        } else {
+            chunk.previous.next = chunk;
+        }
+    }
+
+    private void linkAfter(Chunk chunk, Chunk predecessor) {
+        if (predecessor == null) {
+            linkBefore(chunk, first);
+        } else {
+            linkBefore(chunk, predecessor.next);
+        }
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.previous == null) {
+            first = chunk.next;
+        } else {
+            chunk.previous.next = chunk.next;
+        }
+        if (chunk.next == null) {
+            last = chunk.previous;
+        } else {
+            chunk.next.previous = chunk.previous;
+        }
+    }
+
+    private IndexOutOfBoundsException outOfBounds(int pos) {
+        return new IndexOutOfBoundsException("Positie " + pos + " valt buiten de lijst met " + size + " elementen");
+    }
+}
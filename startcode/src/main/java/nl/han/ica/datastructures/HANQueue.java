@@ -0,0 +1,110 @@
+package nl.han.ica.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Queue on a ring buffer. The capacity is always a power of two, so wrapping
+ * around is a mask instead of a division. The buffer doubles when it is full.
+ */
+public class HANQueue<T> implements IHANQueue<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Object[] elements;
+    private int mask;
+    private int head;
+    private int size;
+
+    public HANQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of values that fit before the buffer has to grow, rounded up to a power of two
+     */
+    public HANQueue(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capaciteit mag niet negatief zijn: " + initialCapacity);
+        }
+        if (initialCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capaciteit mag niet groter zijn dan " + MAX_CAPACITY + ": " + initialCapacity);
+        }
+        int capacity = initialCapacity <= 1 ? 1 : Integer.highestOneBit(initialCapacity - 1) << 1;
+        elements = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    @Override
+    public void clear() {
+        int tail = head + size;
+        if (tail <= elements.length) {
+            Arrays.fill(elements, head, tail, null);
+        } else {
+            Arrays.fill(elements, head, elements.length, null);
+            Arrays.fill(elements, 0, tail & mask, null);
+        }
+        head = 0;
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void enqueue(T value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & mask] = value;
+        size++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T dequeue() {
+        if (size == 0) {
+            throw new IllegalStateException("Kan niet dequeue() uitvoeren op een lege queue");
+        }
+        T value = (T) elements[head];
+        elements[head] = null;
+        head = (head + 1) & mask;
+        size--;
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        if (size == 0) {
+            throw new IllegalStateException("Kan niet peek() uitvoeren op een lege queue");
+        }
+        return (T) elements[head];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    //Doubles the buffer and unwraps the values, so the head is at 0 again
+    private void grow() {
+        int capacity = elements.length;
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Queue kan niet groter worden dan " + MAX_CAPACITY + " elementen");
+        }
+        Object[] grown = new Object[capacity << 1];
+        int firstPart = capacity - head;
+        System.arraycopy(elements, head, grown, 0, firstPart);
+        System.arraycopy(elements, 0, grown, firstPart, head);
+        elements = grown;
+        mask = grown.length - 1;
+        head = 0;
+    }
+}
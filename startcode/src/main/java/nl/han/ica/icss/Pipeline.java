@@ -1,13 +1,21 @@
 package nl.han.ica.icss;
 
+import nl.han.ica.datastructures.HANArrayStack;
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.SpilledRules;
 import nl.han.ica.icss.checker.Checker;
 import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.events.*;
 import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.metrics.*;
 import nl.han.ica.icss.parser.ASTListener;
 import nl.han.ica.icss.parser.ICSSLexer;
 import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.transforms.EvaluationCache;
+import nl.han.ica.icss.transforms.EvaluationProfile;
 import nl.han.ica.icss.transforms.Evaluator;
+import nl.han.ica.icss.transforms.RuleMerger;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.dfa.DFA;
@@ -15,17 +23,51 @@ import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 public class Pipeline implements ANTLRErrorListener {
 
+    private static final Properties BUILD_INFO = readBuildInfo();
+
+    //Comes from pom.xml through a filtered resource
+    public static final String VERSION = BUILD_INFO.getProperty("version", "unknown");
+
     private AST ast;
+    //The tree as it was before transform, it shares the nodes that did not change with ast
+    private AST checkedAST;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
+    private boolean parallel = false;
+    private boolean minify = false;
+    private boolean optimize = false;
+    private int spillThreshold = 0;
     private List<String> errors;
+    private EvaluationCache evaluationCache;
+    private EvaluationProfile profile;
+    private String sourceName = "<input>";
+    private final List<MetricsListener> metricsListeners = new ArrayList<>();
+    //Reused by every parse, it keeps the capacity needed for the deepest stylesheet so far
+    private final HANArrayStack<ASTNode> containers = new HANArrayStack<>();
+
+    private static Properties readBuildInfo() {
+        Properties properties = new Properties();
+        try (InputStream input = Pipeline.class.getResourceAsStream("/icss-version.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            //Without the resource the version is unknown
+        }
+        return properties;
+    }
 
     public Pipeline() {
         errors = new ArrayList<>();
@@ -34,6 +76,15 @@ public class Pipeline implements ANTLRErrorListener {
     public AST getAST() {
         return ast;
     }
+
+    /**
+     * The checked tree is not changed by transform, the transformed tree is a new tree that
+     * shares the rules and declarations that evaluation left as they were.
+     * @return the AST before the last transform, or the current AST when it was not transformed
+     */
+    public AST getCheckedAST() {
+        return checkedAST != null ? checkedAST : ast;
+    }
     public List<String> getErrors() {
         return errors;
     }
@@ -46,8 +97,84 @@ public class Pipeline implements ANTLRErrorListener {
     public boolean isTransformed() {
         return transformed;
     }
+    public boolean isParallel() {
+        return parallel;
+    }
+    /**
+     * Enables splitting the work of the pipeline stages over the common fork-join pool
+     * @param parallel true to use all cores
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+    public boolean isMinify() {
+        return minify;
+    }
+    public void setMinify(boolean minify) {
+        this.minify = minify;
+    }
+    public boolean isOptimize() {
+        return optimize;
+    }
+    /**
+     * Enables the optimisation transforms that run after evaluation, like merging rules with equal bodies
+     * @param optimize true to optimise the transformed AST
+     */
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+    /**
+     * Lets for loops that expand to at least this many rules keep them outside the heap until they are generated
+     * @param spillThreshold number of rules, 0 to keep all rules on the heap
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+    public EvaluationProfile getProfile() {
+        return profile;
+    }
+    /**
+     * Profiles the evaluation of the checked AST during transform, see {@link EvaluationProfile}.
+     * While profiling the AST is evaluated sequentially, also when the pipeline is parallel.
+     * @param profile the profile to add to, or null to stop profiling
+     */
+    public void setProfile(EvaluationProfile profile) {
+        this.profile = profile;
+    }
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+    public String getSourceName() {
+        return sourceName;
+    }
+    /**
+     * Sets the name of the stylesheet that is compiled next, it is reported in the metrics and JFR events
+     * @param sourceName file name or other description of the input
+     */
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+    /**
+     * Registers a listener that receives timing, allocation and node counts of every stage.
+     * Nothing is measured while no listener is registered.
+     * @param listener the listener to add
+     */
+    public void addMetricsListener(MetricsListener listener) {
+        metricsListeners.add(listener);
+    }
+    public void removeMetricsListener(MetricsListener listener) {
+        metricsListeners.remove(listener);
+    }
 
     public void parseString(String input) {
+        //The previous tree is replaced, its spilled rules are freed now instead of when it is collected
+        closeSpilledRules();
+        StageTimer timer = startStage();
+        int tokenCount = -1;
+        ParseEvent parseEvent = new ParseEvent();
 
         //Lex (with Antlr's generated lexer)
         CharStream inputStream = CharStreams.fromString(input);
@@ -57,8 +184,23 @@ public class Pipeline implements ANTLRErrorListener {
         errors.clear();
         try {
             CommonTokenStream tokens = new CommonTokenStream(lexer);
+            //Tokens are normally read while parsing, fill them first so both steps can be timed apart
+            LexEvent lexEvent = new LexEvent();
+            if (lexEvent.isEnabled()) {
+                lexEvent.begin();
+                tokens.fill();
+                lexEvent.end();
+                if (lexEvent.shouldCommit()) {
+                    lexEvent.file = sourceName;
+                    lexEvent.inputSize = input.length();
+                    lexEvent.tokens = tokens.size();
+                    lexEvent.errors = errors.size();
+                    lexEvent.commit();
+                }
+            }
 
             //Parse (with Antlr's generated parser)
+            parseEvent.begin();
             ICSSParser parser = new ICSSParser(tokens);
             parser.removeErrorListeners();
             parser.addErrorListener(this);
@@ -66,11 +208,12 @@ public class Pipeline implements ANTLRErrorListener {
             ParseTree parseTree = parser.stylesheet();
 
             //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
+            ASTListener listener = new ASTListener(containers);
             ParseTreeWalker walker = new ParseTreeWalker();
             walker.walk(listener, parseTree);
 
             this.ast = listener.getAST();
+            tokenCount = tokens.size();
 
         } catch (RecognitionException e) {
             this.ast = new AST();
@@ -82,12 +225,27 @@ public class Pipeline implements ANTLRErrorListener {
         }
         parsed = errors.isEmpty();
         checked = transformed = false;
+        checkedAST = null;
+        parseEvent.end();
+        endStage(timer, Stage.PARSE, -1, tokenCount, errors.size());
+        if (parseEvent.shouldCommit()) {
+            parseEvent.file = sourceName;
+            parseEvent.inputSize = input.length();
+            parseEvent.tokens = tokenCount;
+            parseEvent.nodes = NodeCounter.count(ast);
+            parseEvent.errors = errors.size();
+            parseEvent.commit();
+        }
     }
     public boolean check() {
             if(ast == null)
                 return false;
 
-           (new Checker()).check(this.ast);
+           StageTimer timer = startStage();
+           CheckEvent event = new CheckEvent();
+           event.begin();
+           Checker checker = parallel ? new Checker(ForkJoinPool.commonPool()) : new Checker();
+           checker.check(this.ast);
 
             ArrayList<SemanticError> errors = this.ast.getErrors();
             if (!errors.isEmpty()) {
@@ -98,6 +256,15 @@ public class Pipeline implements ANTLRErrorListener {
 
             checked = errors.isEmpty();
             transformed = false;
+            event.end();
+            endStage(timer, Stage.CHECK, -1, -1, errors.size());
+            if (event.shouldCommit()) {
+                event.file = sourceName;
+                event.nodes = NodeCounter.count(ast);
+                event.errors = errors.size();
+                event.parallel = parallel;
+                event.commit();
+            }
             return errors.isEmpty();
     }
 
@@ -109,14 +276,108 @@ public class Pipeline implements ANTLRErrorListener {
         if(ast == null)
             return;
 
-        (new Evaluator()).apply(ast);
+        EvaluateEvent event = new EvaluateEvent();
+        int nodesBefore = metricsListeners.isEmpty() && !event.isEnabled() ? -1 : NodeCounter.count(ast);
+        StageTimer timer = startStage();
+        event.begin();
+        Evaluator evaluator = parallel && profile == null
+                ? new Evaluator(Evaluator.DEFAULT_CACHE_SIZE, ForkJoinPool.commonPool())
+                : new Evaluator();
+        evaluator.setSpillThreshold(spillThreshold);
+        evaluator.setProfile(profile);
+        checkedAST = ast;
+        ast = evaluator.evaluate(checkedAST);
+        evaluationCache = evaluator.getCache();
+        if (optimize) {
+            (new RuleMerger()).apply(ast);
+        }
 
 
         transformed = errors.isEmpty();
+        event.end();
+        endStage(timer, Stage.TRANSFORM, nodesBefore, -1, errors.size());
+        if (event.shouldCommit()) {
+            event.file = sourceName;
+            event.nodesBefore = nodesBefore;
+            event.nodes = NodeCounter.count(ast);
+            event.errors = errors.size();
+            event.cacheHits = evaluationCache.getHits();
+            event.cacheMisses = evaluationCache.getMisses();
+            event.parallel = parallel;
+            event.commit();
+        }
     }
     public String generate() {
+        StageTimer timer = startStage();
+        GenerateEvent event = new GenerateEvent();
+        event.begin();
+        Generator generator = parallel ? new Generator(ForkJoinPool.commonPool()) : new Generator();
+        generator.setMinify(minify);
+        String css = generator.generate(ast);
+        event.end();
+        endStage(timer, Stage.GENERATE, -1, -1, 0);
+        if (event.shouldCommit()) {
+            event.file = sourceName;
+            event.nodes = NodeCounter.count(ast);
+            event.outputSize = css.length();
+            event.minify = minify;
+            event.commit();
+        }
+        return css;
+    }
+
+    /**
+     * Generates the CSS without keeping it in memory, see {@link Generator#generate(AST, Consumer)}.
+     * The rules are generated sequentially, also when the pipeline is parallel.
+     * @param rules gets the banner and then every generated rule, in order
+     */
+    public void generate(Consumer<String> rules) {
+        StageTimer timer = startStage();
+        GenerateEvent event = new GenerateEvent();
+        event.begin();
         Generator generator = new Generator();
-        return generator.generate(ast);
+        generator.setMinify(minify);
+        long[] outputSize = new long[1];
+        generator.generate(ast, css -> {
+            outputSize[0] += css.length();
+            rules.accept(css);
+        });
+        event.end();
+        endStage(timer, Stage.GENERATE, -1, -1, 0);
+        if (event.shouldCommit()) {
+            event.file = sourceName;
+            event.nodes = NodeCounter.count(ast);
+            event.outputSize = outputSize[0];
+            event.minify = minify;
+            event.commit();
+        }
+    }
+
+    private void closeSpilledRules() {
+        if (ast == null || ast.root == null) {
+            return;
+        }
+        for (ASTNode child : ast.root.getChildren()) {
+            if (child instanceof SpilledRules) {
+                ((SpilledRules) child).close();
+            }
+        }
+    }
+
+    private StageTimer startStage() {
+        return metricsListeners.isEmpty() ? null : StageTimer.start();
+    }
+
+    private void endStage(StageTimer timer, Stage stage, int nodesBefore, int tokenCount, int errorCount) {
+        if (timer == null) {
+            return;
+        }
+        //Stopped before the nodes are counted, so counting is not part of the stage
+        timer.stop();
+        StageMetrics metrics = timer.getMetrics(stage, sourceName, nodesBefore, NodeCounter.count(ast), tokenCount, errorCount);
+        for (MetricsListener listener : metricsListeners) {
+            listener.stageCompleted(metrics);
+        }
     }
 
     //Catch ANTLR errors
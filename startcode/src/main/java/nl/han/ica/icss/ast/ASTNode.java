@@ -9,6 +9,16 @@ public class ASTNode {
 
     private SemanticError error = null;
 
+    /*
+     Nodes handed out by the ExpressionInterner are shared by several parents.
+     Their structure may not change anymore, so their hash is computed once.
+     */
+    private boolean shared = false;
+    private int structuralHash;
+
+    //Line in the source where the node starts, 0 when unknown. It is not part of equals.
+    private int line = 0;
+
     /*
      This method is used in the GUI to create an appropriate label
      in the tree visualisation.
@@ -50,6 +60,23 @@ public class ASTNode {
         return error != null;
     }
 
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    void share() {
+        structuralHash = hashCode();
+        shared = true;
+    }
+
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
@@ -68,8 +95,12 @@ public class ASTNode {
 
 	@Override
     public boolean equals(Object o) {
+        if(this == o)
+            return true;
         if(! (o instanceof ASTNode))
             return false;
+        if(shared && ((ASTNode) o).shared && structuralHash != ((ASTNode) o).structuralHash)
+            return false;
         //Compare all children
         List<ASTNode> thisChildren = this.getChildren();
         List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
@@ -82,4 +113,11 @@ public class ASTNode {
         }
         return true;
     }
+
+    @Override
+    public int hashCode() {
+        if(shared)
+            return structuralHash;
+        return 31 * getClass().hashCode() + getChildren().hashCode();
+    }
 }
@@ -0,0 +1,57 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.loops.LoopIdentifier;
+
+import java.util.HashMap;
+
+/*
+ * Hash-consing for expressions: structurally equal expressions are replaced by
+ * one shared instance. Only expressions without variable references or loop
+ * identifiers are shared, because their meaning does not depend on the scope
+ * they appear in.
+ */
+public class ExpressionInterner {
+
+    private final HashMap<Expression, Expression> interned = new HashMap<>();
+
+    public Expression intern(Expression expression) {
+        if (expression == null || expression.isShared() || !isClosed(expression)) {
+            return expression;
+        }
+        if (expression instanceof Operation) {
+            Operation operation = (Operation) expression;
+            operation.lhs = intern(operation.lhs);
+            operation.rhs = intern(operation.rhs);
+        }
+
+        Expression existing = interned.get(expression);
+        if (existing != null) {
+            return existing;
+        }
+        expression.share();
+        interned.put(expression, expression);
+        return expression;
+    }
+
+    public int size() {
+        return interned.size();
+    }
+
+    private boolean isClosed(Expression expression) {
+        if (expression.isShared()) {
+            return true;
+        }
+        if (expression instanceof LoopIdentifier) {
+            return false;
+        }
+        if (expression instanceof Literal) {
+            return true;
+        }
+        if (expression instanceof Operation) {
+            Operation operation = (Operation) expression;
+            return operation.lhs != null && operation.rhs != null
+                    && isClosed(operation.lhs) && isClosed(operation.rhs);
+        }
+        return false;
+    }
+}
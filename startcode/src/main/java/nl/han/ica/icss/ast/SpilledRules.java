@@ -0,0 +1,335 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Evaluated rules stored outside the Java heap. The Evaluator puts the rules of a large for loop
+ * in here instead of in the stylesheet, so they do not have to be traced by the garbage collector
+ * until they are generated. Rules can only be appended and read back in order.
+ *
+ * Every rule is encoded as: the number of selectors, for every selector its kind and UTF-8 text,
+ * the number of declarations, and for every declaration the index of its property name and its
+ * literal. Property names are few, so they are kept once in a table on the heap. Numbers are varints.
+ * A rule never spans two chunks.
+ *
+ * The chunks are direct buffers, close() frees them right away instead of when the block is
+ * garbage collected. The binary format and the flat AST store the decoded rules instead of the block.
+ */
+public class SpilledRules extends ASTNode implements Closeable {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int TAG_SELECTOR = 0;
+    private static final int CLASS_SELECTOR = 1;
+    private static final int ID_SELECTOR = 2;
+
+    private static final int NO_LITERAL = 0;
+    private static final int PIXEL = 1;
+    private static final int PERCENTAGE = 2;
+    private static final int SCALAR = 3;
+    private static final int COLOR = 4;
+    private static final int BOOL = 5;
+
+    //Unsafe.invokeCleaner frees a direct buffer, without it the buffers are freed by the garbage collector
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final List<String> propertyNames = new ArrayList<>();
+    private final HashMap<String, Integer> propertyIndex = new HashMap<>();
+    private int ruleCount;
+    private int nodeCount;
+    private long sizeInBytes;
+    private boolean closed = false;
+
+    //A rule is encoded here first, so its size is known before it is copied into a chunk
+    private byte[] scratch = new byte[256];
+    private int length;
+
+    @Override
+    public String getNodeLabel() {
+        return "Spilled rules (" + ruleCount + " rules, " + sizeInBytes + " bytes)";
+    }
+
+    /**
+     * Encodes a rule and appends it. Only literal expressions are kept, other expressions are not generated anyway.
+     * @param rule the rule to add
+     */
+    public void append(Stylerule rule) {
+        checkOpen();
+        length = 0;
+        //The rule and its selectors, every declaration adds itself, its property and maybe a literal
+        int nodes = 1 + rule.selectors.size();
+        writeVarint(rule.selectors.size());
+        for (Selector selector : rule.selectors) {
+            if (selector instanceof ClassSelector) {
+                writeByte(CLASS_SELECTOR);
+                writeString(((ClassSelector) selector).cls);
+            } else if (selector instanceof IdSelector) {
+                writeByte(ID_SELECTOR);
+                writeString(((IdSelector) selector).id);
+            } else {
+                writeByte(TAG_SELECTOR);
+                writeString(((TagSelector) selector).tag);
+            }
+        }
+
+        int declarations = 0;
+        for (ASTNode node : rule.body) {
+            if (node instanceof Declaration) {
+                declarations++;
+            }
+        }
+        writeVarint(declarations);
+        for (ASTNode node : rule.body) {
+            if (node instanceof Declaration) {
+                Declaration declaration = (Declaration) node;
+                writeVarint(propertyIndexOf(declaration.property.name));
+                nodes += writeLiteral(declaration.expression) ? 3 : 2;
+            }
+        }
+
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, length));
+            chunks.add(chunk);
+        }
+        chunk.put(scratch, 0, length);
+        ruleCount++;
+        nodeCount += nodes;
+        sizeInBytes += length;
+    }
+
+    /**
+     * Decodes the rules one by one in the order they were appended. Every rule is a new object,
+     * so only the rule that is being handled is on the heap.
+     * @param action called for every rule
+     */
+    public void forEach(Consumer<Stylerule> action) {
+        checkOpen();
+        byte[] text = new byte[64];
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer buffer = chunk.duplicate().flip();
+            while (buffer.hasRemaining()) {
+                Stylerule rule = new Stylerule();
+                int selectors = readVarint(buffer);
+                for (int i = 0; i < selectors; i++) {
+                    int kind = buffer.get();
+                    int size = readVarint(buffer);
+                    if (text.length < size) {
+                        text = new byte[size];
+                    }
+                    buffer.get(text, 0, size);
+                    String name = new String(text, 0, size, StandardCharsets.UTF_8);
+                    rule.selectors.add(kind == CLASS_SELECTOR ? new ClassSelector(name)
+                            : kind == ID_SELECTOR ? new IdSelector(name) : new TagSelector(name));
+                }
+                int declarations = readVarint(buffer);
+                for (int i = 0; i < declarations; i++) {
+                    Declaration declaration = new Declaration(propertyNames.get(readVarint(buffer)));
+                    declaration.expression = readLiteral(buffer);
+                    rule.body.add(declaration);
+                }
+                action.accept(rule);
+            }
+        }
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return the number of nodes of the decoded rules, what the rules would count in the AST
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Frees the chunks, the rules cannot be read after this
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (INVOKE_CLEANER != null) {
+            for (ByteBuffer chunk : chunks) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, chunk);
+                } catch (ReflectiveOperationException e) {
+                    //Left to the garbage collector
+                }
+            }
+        }
+        chunks.clear();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("De regels zijn al vrijgegeven");
+        }
+    }
+
+    /**
+     * @return the number of bytes taken by the encoded rules, without the unused end of the last chunk
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private int propertyIndexOf(String name) {
+        Integer index = propertyIndex.get(name);
+        if (index == null) {
+            index = propertyNames.size();
+            propertyNames.add(name);
+            propertyIndex.put(name, index);
+        }
+        return index;
+    }
+
+    //Returns false when the expression is not a literal and is left out
+    private boolean writeLiteral(Expression expression) {
+        if (expression instanceof PixelLiteral) {
+            writeByte(PIXEL);
+            writeVarint(zigzag(((PixelLiteral) expression).value));
+        } else if (expression instanceof PercentageLiteral) {
+            writeByte(PERCENTAGE);
+            writeVarint(zigzag(((PercentageLiteral) expression).value));
+        } else if (expression instanceof ScalarLiteral) {
+            writeByte(SCALAR);
+            writeVarint(zigzag(((ScalarLiteral) expression).value));
+        } else if (expression instanceof ColorLiteral) {
+            writeByte(COLOR);
+            writeVarint(((ColorLiteral) expression).value);
+        } else if (expression instanceof BoolLiteral) {
+            writeByte(BOOL);
+            writeByte(((BoolLiteral) expression).value ? 1 : 0);
+        } else {
+            writeByte(NO_LITERAL);
+            return false;
+        }
+        return true;
+    }
+
+    private static Expression readLiteral(ByteBuffer buffer) {
+        switch (buffer.get()) {
+            case PIXEL: return new PixelLiteral(unzigzag(readVarint(buffer)));
+            case PERCENTAGE: return new PercentageLiteral(unzigzag(readVarint(buffer)));
+            case SCALAR: return new ScalarLiteral(unzigzag(readVarint(buffer)));
+            case COLOR: return new ColorLiteral(readVarint(buffer));
+            case BOOL: return new BoolLiteral(buffer.get() != 0);
+            default: return null;
+        }
+    }
+
+    private void writeString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        ensureScratch(bytes.length);
+        System.arraycopy(bytes, 0, scratch, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeByte(int value) {
+        ensureScratch(1);
+        scratch[length++] = (byte) value;
+    }
+
+    private void writeVarint(int value) {
+        ensureScratch(5);
+        while ((value & ~0x7f) != 0) {
+            scratch[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        scratch[length++] = (byte) value;
+    }
+
+    private void ensureScratch(int extra) {
+        if (length + extra > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, length + extra));
+        }
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /*
+     Rules are appended in a fixed way, so blocks with the same rules have the same bytes.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SpilledRules that = (SpilledRules) o;
+        if (ruleCount != that.ruleCount || sizeInBytes != that.sizeInBytes
+                || chunks.size() != that.chunks.size() || !propertyNames.equals(that.propertyNames)) {
+            return false;
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!chunks.get(i).duplicate().flip().equals(that.chunks.get(i).duplicate().flip())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * ruleCount + Long.hashCode(sizeInBytes);
+    }
+}
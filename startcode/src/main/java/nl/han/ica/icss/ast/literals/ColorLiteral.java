@@ -2,17 +2,22 @@ package nl.han.ica.icss.ast.literals;
 
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
+/*
+ * Colors are stored packed as 0xRRGGBB, the hex notation is only
+ * produced again when the output is generated.
+ */
 public class ColorLiteral extends Literal {
-    public String value;
+    public int value;
 
-    public ColorLiteral(String value) {
+    public ColorLiteral(int value) {
         this.value = value;
     }
+    public ColorLiteral(String text) {
+        this.value = Integer.parseInt(text, 1, text.length(), 16);
+    }
     @Override
     public String getNodeLabel() {
-        return "Color literal (" + value + ")";
+        return "Color literal (" + String.format("#%06x", value) + ")";
     }
 
 
@@ -21,11 +26,10 @@ public class ColorLiteral extends Literal {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+        return value == that.value;
     }
     @Override
     public int hashCode() {
-
-        return Objects.hash(value);
+        return value;
     }
 }
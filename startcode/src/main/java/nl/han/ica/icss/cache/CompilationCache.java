@@ -0,0 +1,248 @@
+package nl.han.ica.icss.cache;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of generated CSS. Entries are stored in a local directory under the
+ * SHA-256 of the tool version, the class files of the compiler, the output options and the ICSS
+ * source, so an unchanged stylesheet is never compiled again until the compiler itself changes.
+ * Rebuilding the same compiler gives the same class files, so it keeps the cache. When the directory
+ * grows beyond its limit the least recently used entries are removed.
+ * A cache can be shared by several threads, each with its own pipeline.
+ */
+public class CompilationCache {
+
+    private static final String EXTENSION = ".css";
+    private static final String COMPILER_HASH = hashCompiler();
+
+    private final Path directory;
+    private final long maxBytes;
+    //Guarded by this
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public CompilationCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        currentBytes = 0;
+        for (Path entry : listEntries()) {
+            currentBytes += Files.size(entry);
+        }
+    }
+
+    /**
+     * Returns the CSS for the given source, from the cache when possible.
+     * On a miss the source is compiled with the given pipeline.
+     * @param input ICSS source
+     * @param pipeline pipeline used on a miss, its errors are available afterwards
+     * @return the generated CSS, or null when the source contains errors
+     */
+    public String compile(String input, Pipeline pipeline) throws IOException {
+        Path entry = directory.resolve(keyOf(input, options(pipeline)) + EXTENSION);
+
+        if (Files.isRegularFile(entry)) {
+            try {
+                String css = Files.readString(entry, StandardCharsets.UTF_8);
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                hits.incrementAndGet();
+                bytesSaved.addAndGet(input.getBytes(StandardCharsets.UTF_8).length);
+                return css;
+            } catch (NoSuchFileException e) {
+                //Evicted in the meantime, compile it again
+            }
+        }
+        misses.incrementAndGet();
+
+        pipeline.parseString(input);
+        if (!pipeline.isParsed() || !pipeline.check()) {
+            return null;
+        }
+        pipeline.transform();
+        if (!pipeline.getErrors().isEmpty()) {
+            return null;
+        }
+        String css = pipeline.generate();
+
+        store(entry, css);
+        return css;
+    }
+
+    private void store(Path entry, String css) throws IOException {
+        byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+        Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+        Files.write(temporary, bytes);
+        //Two threads can compile the same source at once, the size of a replaced entry is not counted twice
+        synchronized (this) {
+            long replaced = Files.isRegularFile(entry) ? Files.size(entry) : 0;
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            currentBytes += bytes.length - replaced;
+            if (currentBytes > maxBytes) {
+                evict();
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = listEntries();
+        entries.sort(Comparator.comparing(CompilationCache::lastModified));
+
+        currentBytes = 0;
+        for (Path entry : entries) {
+            currentBytes += Files.size(entry);
+        }
+        for (Path entry : entries) {
+            if (currentBytes <= maxBytes) {
+                break;
+            }
+            long size = Files.size(entry);
+            if (Files.deleteIfExists(entry)) {
+                currentBytes -= size;
+            }
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static FileTime lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    //Every pipeline setting that changes the generated CSS has to be part of the key
+    private static String options(Pipeline pipeline) {
+        return "minify=" + pipeline.isMinify() + ",optimize=" + pipeline.isOptimize();
+    }
+
+    static String keyOf(String input, String options) {
+        MessageDigest digest = sha256();
+        digest.update(Pipeline.VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(COMPILER_HASH.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return toHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /*
+     Hashes the names and contents of the class files in the jar or classes directory the compiler
+     was loaded from. The jar file itself is not hashed, it holds the time it was packaged.
+     */
+    private static String hashCompiler() {
+        try {
+            return hashClasses(Paths.get(Pipeline.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            //Without the class files only the version tells compilers apart
+            return "unknown";
+        }
+    }
+
+    /**
+     * @param location a jar or a directory with class files
+     * @return the hash of the names and contents of the class files
+     */
+    static String hashClasses(Path location) throws IOException {
+        MessageDigest digest = sha256();
+        if (Files.isDirectory(location)) {
+            List<Path> classes;
+            try (Stream<Path> files = Files.walk(location)) {
+                classes = files.filter(file -> file.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+            }
+            for (Path file : classes) {
+                digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(file));
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                List<JarEntry> classes = jar.stream().filter(entry -> entry.getName().endsWith(".class"))
+                        .sorted(Comparator.comparing(JarEntry::getName)).collect(Collectors.toList());
+                for (JarEntry entry : classes) {
+                    digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    try (InputStream input = jar.getInputStream(entry)) {
+                        digest.update(input.readAllBytes());
+                    }
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is niet beschikbaar", e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return number of source bytes that did not have to be compiled thanks to the cache
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public synchronized long getSizeInBytes() {
+        return currentBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CompilationCache{hits=%d, misses=%d, hitRate=%.1f%%, bytesSaved=%d, size=%d/%d}",
+                getHits(), getMisses(), getHitRate() * 100, getBytesSaved(), getSizeInBytes(), maxBytes);
+    }
+}
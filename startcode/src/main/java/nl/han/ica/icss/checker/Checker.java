@@ -12,14 +12,38 @@ import nl.han.ica.icss.ast.types.ExpressionType;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Checker {
 
-    private LinkedList<HashMap<String, ExpressionType>> variableScopes;
+    //Number of rulesets a single fork-join task checks sequentially
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private LinkedList<Map<String, ExpressionType>> variableScopes;
+    private final ForkJoinPool pool;
+
+    public Checker() {
+        this(null);
+    }
+
+    /**
+     * Creates a checker that checks the top-level rulesets in parallel on the given pool
+     * @param pool the pool to use, or null to check sequentially
+     */
+    public Checker(ForkJoinPool pool) {
+        this.pool = pool;
+    }
 
     public void check(AST ast) {
         variableScopes = new LinkedList<>();
-        checkStylesheet(ast.root);
+        if (pool == null) {
+            checkStylesheet(ast.root);
+        } else {
+            checkStylesheetParallel(ast.root);
+        }
     }
 
     private void checkStylesheet(Stylesheet stylesheet) {
@@ -38,6 +62,76 @@ public class Checker {
         popScope();
     }
 
+    /*
+     Global assignments are checked in source order first. Every ruleset gets an immutable
+     snapshot of the globals declared before it, so the rulesets can be checked independently.
+     Errors are stored on the nodes of each ruleset, which keeps them in source order.
+     */
+    private void checkStylesheetParallel(Stylesheet stylesheet) {
+        pushScope();
+
+        List<ASTNode> rulesets = new ArrayList<>();
+        List<Map<String, ExpressionType>> globals = new ArrayList<>();
+        Map<String, ExpressionType> snapshot = null;
+
+        for (ASTNode child : stylesheet.getChildren()) {
+            if (child instanceof VariableAssignment) {
+                checkVariableAssignment((VariableAssignment) child);
+                snapshot = null;
+            } else if (child instanceof Stylerule || child instanceof ForLoop) {
+                if (snapshot == null) {
+                    snapshot = Map.copyOf(variableScopes.peek());
+                }
+                rulesets.add(child);
+                globals.add(snapshot);
+            }
+        }
+
+        pool.invoke(new CheckTask(rulesets, globals, 0, rulesets.size()));
+        popScope();
+    }
+
+    private void checkRuleset(ASTNode ruleset, Map<String, ExpressionType> globals) {
+        variableScopes = new LinkedList<>();
+        variableScopes.push(globals);
+
+        if (ruleset instanceof Stylerule) {
+            checkStylerule((Stylerule) ruleset);
+        } else if (ruleset instanceof ForLoop) {
+            checkForLoop((ForLoop) ruleset);
+        }
+    }
+
+    private static class CheckTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ASTNode> rulesets;
+        private final List<Map<String, ExpressionType>> globals;
+        private final int start;
+        private final int end;
+
+        CheckTask(List<ASTNode> rulesets, List<Map<String, ExpressionType>> globals, int start, int end) {
+            this.rulesets = rulesets;
+            this.globals = globals;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                Checker worker = new Checker();
+                for (int i = start; i < end; i++) {
+                    worker.checkRuleset(rulesets.get(i), globals.get(i));
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new CheckTask(rulesets, globals, start, middle),
+                        new CheckTask(rulesets, globals, middle, end));
+            }
+        }
+    }
+
     private void checkVariableAssignment(VariableAssignment assignment) {
         ExpressionType assignmentType = getExpressionType(assignment.expression);
 
@@ -120,7 +214,7 @@ public class Checker {
     }
 
     private ExpressionType resolveVariableType(String variableName) {
-        for (HashMap<String, ExpressionType> scope : variableScopes) {
+        for (Map<String, ExpressionType> scope : variableScopes) {
             if (scope.containsKey(variableName)) {
                 return scope.get(variableName);
             }
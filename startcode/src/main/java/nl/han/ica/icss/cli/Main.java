@@ -0,0 +1,215 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.datastructures.HANConcurrentQueue;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.cache.CompilationCache;
+import nl.han.ica.icss.metrics.SummaryMetricsListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless entry point, compiles .icss files without loading any JavaFX or Guava classes.
+ *
+ * Usage: Main [--minify] [--optimize] [--parallel] [--metrics] [--jobs n] [--spill n] [--cache dir] [-o outputdir] file.icss...
+ * Without an output directory the CSS is written to standard out. With --metrics a summary
+ * of the time spent per stage is written to standard error. With --jobs the files are
+ * compiled on n threads, the output and errors are still written in the order of the files.
+ * With --spill, for loops that expand to at least n rules keep them outside the heap.
+ * With --cache, generated CSS is kept in the directory and unchanged files are not compiled again.
+ */
+public class Main {
+
+    //Workers stop when they take this index from the queue
+    private static final Integer END = -1;
+    private static final long CACHE_SIZE = 256L * 1024 * 1024;
+
+    private boolean minify = false;
+    private boolean optimize = false;
+    private boolean parallel = false;
+    private int spillThreshold = 0;
+    private SummaryMetricsListener summary = null;
+    private CompilationCache cache = null;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Main main = new Main();
+        Path outputDirectory = null;
+        int jobs = 1;
+        List<Path> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--minify":
+                    main.minify = true;
+                    break;
+                case "--optimize":
+                    main.optimize = true;
+                    break;
+                case "--parallel":
+                    main.parallel = true;
+                    break;
+                case "--metrics":
+                    main.summary = new SummaryMetricsListener();
+                    break;
+                case "--spill":
+                    main.spillThreshold = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache":
+                    main.cache = new CompilationCache(Paths.get(args[++i]), CACHE_SIZE);
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(args[++i]);
+                    break;
+                case "-o":
+                    outputDirectory = Paths.get(args[++i]);
+                    break;
+                default:
+                    files.add(Paths.get(args[i]));
+            }
+        }
+        if (files.isEmpty() || jobs < 1) {
+            System.err.println("Gebruik: Main [--minify] [--optimize] [--parallel] [--metrics] [--jobs n] [--spill n] [--cache dir] [-o outputdir] file.icss...");
+            System.exit(2);
+        }
+
+        Result[] results = jobs == 1 ? main.compileAll(files) : main.compileAll(files, jobs);
+        boolean failed = false;
+        for (Result result : results) {
+            failed |= !result.write(outputDirectory);
+        }
+        if (main.summary != null) {
+            System.err.print(main.summary);
+            if (main.cache != null) {
+                System.err.println(main.cache);
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private Pipeline createPipeline() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setMinify(minify);
+        pipeline.setOptimize(optimize);
+        pipeline.setParallel(parallel);
+        pipeline.setSpillThreshold(spillThreshold);
+        if (summary != null) {
+            pipeline.addMetricsListener(summary);
+        }
+        return pipeline;
+    }
+
+    private Result[] compileAll(List<Path> files) throws IOException {
+        Pipeline pipeline = createPipeline();
+        Result[] results = new Result[files.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = compile(pipeline, files.get(i));
+        }
+        return results;
+    }
+
+    /*
+     The indexes of the files are handed out through a queue, every worker has its own pipeline
+     and puts its results in the slot of the file, so they can be written in order afterwards.
+     */
+    private Result[] compileAll(List<Path> files, int jobs) throws InterruptedException {
+        Result[] results = new Result[files.size()];
+        HANConcurrentQueue<Integer> queue = new HANConcurrentQueue<>(jobs * 4);
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread[] workers = new Thread[jobs];
+        for (int i = 0; i < jobs; i++) {
+            workers[i] = new Thread(() -> {
+                Pipeline pipeline = createPipeline();
+                try {
+                    for (Integer index = queue.take(); !index.equals(END); index = queue.take()) {
+                        //After a failure the remaining files are skipped, but taken until the end
+                        if (failures.isEmpty()) {
+                            try {
+                                results[index] = compile(pipeline, files.get(index));
+                            } catch (IOException | RuntimeException e) {
+                                failures.add(e);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "icss-worker-" + i);
+            workers[i].start();
+        }
+
+        for (int i = 0; i < files.size() && failures.isEmpty(); i++) {
+            queue.put(i);
+        }
+        for (int i = 0; i < jobs; i++) {
+            queue.put(END);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (!failures.isEmpty()) {
+            Exception failure = failures.get(0);
+            if (failure instanceof IOException) {
+                throw new UncheckedIOException((IOException) failure);
+            }
+            throw (RuntimeException) failure;
+        }
+        return results;
+    }
+
+    private Result compile(Pipeline pipeline, Path file) throws IOException {
+        pipeline.setSourceName(file.toString());
+        String input = Files.readString(file, StandardCharsets.UTF_8);
+        if (cache != null) {
+            String css = cache.compile(input, pipeline);
+            if (css == null) {
+                return new Result(file, null, new ArrayList<>(pipeline.getErrors()));
+            }
+            return new Result(file, css, List.of());
+        }
+        pipeline.parseString(input);
+        if (pipeline.isParsed() && pipeline.check()) {
+            pipeline.transform();
+        }
+        if (!pipeline.getErrors().isEmpty()) {
+            return new Result(file, null, new ArrayList<>(pipeline.getErrors()));
+        }
+        return new Result(file, pipeline.generate(), List.of());
+    }
+
+    private static class Result {
+        final Path file;
+        final String css;
+        final List<String> errors;
+
+        Result(Path file, String css, List<String> errors) {
+            this.file = file;
+            this.css = css;
+            this.errors = errors;
+        }
+
+        boolean write(Path outputDirectory) throws IOException {
+            if (css == null) {
+                for (String error : errors) {
+                    System.err.println(file + ": " + error);
+                }
+                return false;
+            }
+            if (outputDirectory == null) {
+                System.out.print(css);
+            } else {
+                String name = file.getFileName().toString().replaceFirst("\\.icss$", "") + ".css";
+                Files.createDirectories(outputDirectory);
+                Files.writeString(outputDirectory.resolve(name), css, StandardCharsets.UTF_8);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package nl.han.ica.icss.daemon;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client for the CompileDaemon. Sends every file given on the command line and
+ * writes the CSS to standard out, errors go to standard error.
+ *
+ * Usage: CompileClient [--port n] [--minify] [--optimize] file.icss...
+ */
+public class CompileClient {
+
+    private final int port;
+
+    public CompileClient(int port) {
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Protocol.DEFAULT_PORT;
+        int options = 0;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--minify")) {
+                options |= Protocol.OPTION_MINIFY;
+            } else if (args[i].equals("--optimize")) {
+                options |= Protocol.OPTION_OPTIMIZE;
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        boolean failed = false;
+        CompileClient client = new CompileClient(port);
+        try (Socket socket = client.connect();
+             DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            for (String file : files) {
+                String source = Files.readString(Paths.get(file), StandardCharsets.UTF_8);
+                List<String> errors = new ArrayList<>();
+                String css = client.compile(input, output, source, options, errors);
+                if (css != null) {
+                    System.out.print(css);
+                } else {
+                    failed = true;
+                    for (String error : errors) {
+                        System.err.println(file + ": " + error);
+                    }
+                }
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    public Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Sends one compile request over an open connection
+     * @return the generated CSS, or null when the daemon reported errors
+     */
+    public String compile(DataInputStream input, DataOutputStream output, String source, int options,
+                          List<String> errors) throws IOException {
+        output.writeInt(Protocol.VERSION);
+        output.writeByte(options);
+        Protocol.writeString(output, source);
+        output.flush();
+
+        int status = input.readByte();
+        String css = Protocol.readString(input);
+        int errorCount = input.readInt();
+        for (int i = 0; i < errorCount; i++) {
+            errors.add(Protocol.readString(input));
+        }
+        return status == Protocol.STATUS_OK ? css : null;
+    }
+}
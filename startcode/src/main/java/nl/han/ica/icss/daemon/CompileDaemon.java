@@ -0,0 +1,120 @@
+package nl.han.ica.icss.daemon;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a warmed up compiler running and serves compile requests on a localhost port,
+ * so a build script only pays for the compilation itself and not for starting the JVM.
+ * Every connection is served on its own thread and can send several requests.
+ */
+public class CompileDaemon {
+
+    //Compiled once at startup to load the classes and fill the ANTLR caches
+    private static final String[] WARM_UP = {"level0.icss", "level1.icss", "level2.icss", "level3.icss"};
+
+    private final int port;
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "icss-compile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CompileDaemon(int port) {
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Protocol.DEFAULT_PORT;
+        CompileDaemon daemon = new CompileDaemon(port);
+        daemon.warmUp();
+        daemon.serve();
+    }
+
+    public void warmUp() throws IOException {
+        ClassLoader classLoader = CompileDaemon.class.getClassLoader();
+        for (String resource : WARM_UP) {
+            try (InputStream input = classLoader.getResourceAsStream(resource)) {
+                if (input != null) {
+                    compile(new String(input.readAllBytes(), StandardCharsets.UTF_8), 0);
+                }
+            }
+        }
+    }
+
+    public void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("ICSS daemon luistert op " + server.getLocalSocketAddress());
+            serve(server);
+        }
+    }
+
+    /**
+     * Accepts connections until the server socket is closed
+     */
+    void serve(ServerSocket server) throws IOException {
+        while (true) {
+            Socket socket = server.accept();
+            workers.execute(() -> handle(socket));
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                int version;
+                try {
+                    version = input.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (version != Protocol.VERSION) {
+                    throw new IOException("Onbekende protocolversie: " + version);
+                }
+                int options = input.readByte();
+                String source = Protocol.readString(input);
+
+                String css = "";
+                List<String> errors;
+                try {
+                    Pipeline pipeline = compile(source, options);
+                    errors = pipeline.getErrors();
+                    if (errors.isEmpty()) {
+                        css = pipeline.generate();
+                    }
+                } catch (RuntimeException e) {
+                    //A bug in the compiler fails this request only, the connection stays usable
+                    css = "";
+                    errors = List.of("Interne fout: " + e);
+                }
+                output.writeByte(errors.isEmpty() ? Protocol.STATUS_OK : Protocol.STATUS_ERRORS);
+                Protocol.writeString(output, css);
+                Protocol.writeErrors(output, errors);
+                output.flush();
+            }
+        } catch (IOException e) {
+            System.err.println(e);
+        }
+    }
+
+    private Pipeline compile(String source, int options) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setMinify((options & Protocol.OPTION_MINIFY) != 0);
+        pipeline.setOptimize((options & Protocol.OPTION_OPTIMIZE) != 0);
+        pipeline.parseString(source);
+        if (pipeline.isParsed() && pipeline.check()) {
+            pipeline.transform();
+        }
+        return pipeline;
+    }
+}
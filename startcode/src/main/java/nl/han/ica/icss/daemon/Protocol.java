@@ -0,0 +1,53 @@
+package nl.han.ica.icss.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/*
+ * Wire format between CompileClient and CompileDaemon.
+ * Request:  int version, byte options, string source
+ * Response: byte status, string css, int error count, errors as strings
+ * A string is an int byte length followed by UTF-8 bytes.
+ */
+class Protocol {
+
+    static final int VERSION = 1;
+    static final int DEFAULT_PORT = 7373;
+
+    static final int OPTION_MINIFY = 1;
+    static final int OPTION_OPTIMIZE = 2;
+
+    static final int STATUS_OK = 0;
+    static final int STATUS_ERRORS = 1;
+
+    //Longest string that is accepted, a larger length is a broken or hostile request
+    static final int MAX_STRING_BYTES = 64 * 1024 * 1024;
+
+    private Protocol() { }
+
+    static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Ongeldige lengte van string: " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeErrors(DataOutputStream output, List<String> errors) throws IOException {
+        output.writeInt(errors.size());
+        for (String error : errors) {
+            writeString(output, error);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Check")
+@Label("ICSS Check")
+@Description("Semantic checking of the AST")
+public class CheckEvent extends PipelineEvent {
+
+    @Label("Parallel")
+    public boolean parallel;
+}
@@ -0,0 +1,23 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Evaluate")
+@Label("ICSS Evaluate")
+@Description("Evaluating and optimising the AST, the nodes field holds the count after the transform")
+public class EvaluateEvent extends PipelineEvent {
+
+    @Label("Nodes Before")
+    public int nodesBefore;
+
+    @Label("Cache Hits")
+    public long cacheHits;
+
+    @Label("Cache Misses")
+    public long cacheMisses;
+
+    @Label("Parallel")
+    public boolean parallel;
+}
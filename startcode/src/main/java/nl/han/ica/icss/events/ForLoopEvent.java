@@ -0,0 +1,37 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Expansion of a single for loop. There can be many of these per stylesheet,
+ * so the event is disabled unless a recording turns it on explicitly.
+ */
+@Name("nl.han.ica.icss.ForLoop")
+@Label("ICSS For Loop Expansion")
+@Description("Expanding the rules of one for loop for every value in its range")
+@Category({"ICSS", "Evaluator"})
+@Enabled(false)
+@StackTrace(false)
+public class ForLoopEvent extends Event {
+
+    @Label("Variable")
+    public String variable;
+
+    @Label("Range Start")
+    public int rangeStart;
+
+    @Label("Range End")
+    public int rangeEnd;
+
+    @Label("Rules Produced")
+    public int rulesProduced;
+
+    @Label("Parallel")
+    public boolean parallel;
+}
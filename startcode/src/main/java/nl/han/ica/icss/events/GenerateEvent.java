@@ -0,0 +1,19 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Generate")
+@Label("ICSS Generate")
+@Description("Generating CSS from the transformed AST")
+public class GenerateEvent extends PipelineEvent {
+
+    @Label("Output Size")
+    @DataAmount
+    public long outputSize;
+
+    @Label("Minify")
+    public boolean minify;
+}
@@ -0,0 +1,19 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Lex")
+@Label("ICSS Lex")
+@Description("Turning the input of a stylesheet into tokens")
+public class LexEvent extends PipelineEvent {
+
+    @Label("Input Size")
+    @DataAmount
+    public long inputSize;
+
+    @Label("Tokens")
+    public int tokens;
+}
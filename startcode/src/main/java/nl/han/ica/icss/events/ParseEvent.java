@@ -0,0 +1,19 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("nl.han.ica.icss.Parse")
+@Label("ICSS Parse")
+@Description("Parsing the tokens of a stylesheet and building the AST")
+public class ParseEvent extends PipelineEvent {
+
+    @Label("Input Size")
+    @DataAmount
+    public long inputSize;
+
+    @Label("Tokens")
+    public int tokens;
+}
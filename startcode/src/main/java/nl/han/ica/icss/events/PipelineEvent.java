@@ -0,0 +1,24 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Fields shared by the events of all pipeline stages. The events are only filled
+ * and committed when a recording has them enabled, otherwise they cost next to nothing.
+ */
+@Category({"ICSS", "Pipeline"})
+@StackTrace(false)
+public abstract class PipelineEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Errors")
+    public int errors;
+}
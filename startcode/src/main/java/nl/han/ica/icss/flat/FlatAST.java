@@ -0,0 +1,270 @@
+package nl.han.ica.icss.flat;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.loops.ForLoop;
+import nl.han.ica.icss.ast.loops.LoopIdentifier;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.serialization.NodeKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The AST as a struct of arrays: node i is described by kind[i], firstChild[i], nextSibling[i],
+ * payload[i] and line[i] instead of by an object with a list of children. Nodes are numbered in
+ * pre-order with the stylesheet at 0, so walking the arrays front to back visits the tree
+ * depth-first. A missing child or sibling is NONE.
+ *
+ * The payload holds the value of a literal (0 or 1 for a boolean) or, for names and selectors,
+ * an index in the string table. Containers have no payload. Errors are rare, so they are kept
+ * in a map from node to description.
+ */
+public class FlatAST {
+
+    public static final int NONE = -1;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] kind;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] payload;
+    //Source line, 0 for nodes that are not on a line of their own
+    private int[] line;
+    private int size;
+
+    private final List<String> strings = new ArrayList<>();
+    //Only needed while flattening
+    private HashMap<String, Integer> stringIndex = new HashMap<>();
+    private final HashMap<Integer, String> errors = new HashMap<>();
+
+    private FlatAST(int capacity) {
+        kind = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        payload = new int[capacity];
+        line = new int[capacity];
+    }
+
+    /**
+     * Flattens a tree. Shared subtrees, like interned expressions, are copied for every place they occur.
+     * @param ast the tree to flatten
+     * @return the flat form of the tree
+     */
+    public static FlatAST of(AST ast) {
+        FlatAST flat = new FlatAST(DEFAULT_CAPACITY);
+        flat.append(ast.root);
+        flat.trim();
+        return flat;
+    }
+
+    private int append(ASTNode node) {
+        NodeKind nodeKind = NodeKind.of(node);
+        int index = allocate();
+        kind[index] = nodeKind.ordinal();
+        firstChild[index] = NONE;
+        nextSibling[index] = NONE;
+        payload[index] = payloadOf(nodeKind, node);
+        line[index] = node.getLine();
+        if (node.hasError()) {
+            errors.put(index, node.getError().description);
+        }
+
+        if (nodeKind.isContainer()) {
+            int[] previous = {NONE};
+            for (ASTNode child : node.getChildren()) {
+                if (child instanceof SpilledRules) {
+                    //Flattened as the rules it holds
+                    ((SpilledRules) child).forEach(rule -> previous[0] = appendChild(index, previous[0], rule));
+                } else if (child != null) {
+                    previous[0] = appendChild(index, previous[0], child);
+                }
+            }
+        }
+        return index;
+    }
+
+    //Returns the index of the child, the previous child of the parent is NONE for the first
+    private int appendChild(int parent, int previous, ASTNode child) {
+        int childIndex = append(child);
+        if (previous == NONE) {
+            firstChild[parent] = childIndex;
+        } else {
+            nextSibling[previous] = childIndex;
+        }
+        return childIndex;
+    }
+
+    private int payloadOf(NodeKind nodeKind, ASTNode node) {
+        switch (nodeKind) {
+            case PROPERTY_NAME: return stringIndexOf(((PropertyName) node).name);
+            case VARIABLE_REFERENCE: return stringIndexOf(((VariableReference) node).name);
+            case LOOP_IDENTIFIER: return stringIndexOf(((LoopIdentifier) node).name);
+            case PIXEL_LITERAL: return ((PixelLiteral) node).value;
+            case PERCENTAGE_LITERAL: return ((PercentageLiteral) node).value;
+            case SCALAR_LITERAL: return ((ScalarLiteral) node).value;
+            case COLOR_LITERAL: return ((ColorLiteral) node).value;
+            case BOOL_LITERAL: return ((BoolLiteral) node).value ? 1 : 0;
+            case ID_SELECTOR: return stringIndexOf(((IdSelector) node).id);
+            case CLASS_SELECTOR: return stringIndexOf(((ClassSelector) node).cls);
+            case TAG_SELECTOR: return stringIndexOf(((TagSelector) node).tag);
+            default: return 0;
+        }
+    }
+
+    private int stringIndexOf(String string) {
+        Integer index = stringIndex.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+        return index;
+    }
+
+    //The arrays grow together, by half their size
+    private int allocate() {
+        if (size == kind.length) {
+            int capacity = size + (size >> 1) + 1;
+            kind = Arrays.copyOf(kind, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            payload = Arrays.copyOf(payload, capacity);
+            line = Arrays.copyOf(line, capacity);
+        }
+        return size++;
+    }
+
+    private void trim() {
+        kind = Arrays.copyOf(kind, size);
+        firstChild = Arrays.copyOf(firstChild, size);
+        nextSibling = Arrays.copyOf(nextSibling, size);
+        payload = Arrays.copyOf(payload, size);
+        line = Arrays.copyOf(line, size);
+        stringIndex = null;
+    }
+
+    /**
+     * Builds the object tree again, with constant expressions shared like the parser does
+     * @return a tree equal to the one this was made of
+     */
+    public AST toAST() {
+        if (size == 0) {
+            return new AST();
+        }
+        return new AST((Stylesheet) toNode(0, new ExpressionInterner()));
+    }
+
+    private ASTNode toNode(int index, ExpressionInterner expressions) {
+        ASTNode node = createNode(index);
+        node.setLine(line[index]);
+        for (int child = firstChild[index]; child != NONE; child = nextSibling[child]) {
+            node.addChild(toNode(child, expressions));
+        }
+        String error = errors.get(index);
+        if (error != null) {
+            node.setError(error);
+        } else if (node instanceof Expression) {
+            node = expressions.intern((Expression) node);
+        }
+        return node;
+    }
+
+    private ASTNode createNode(int index) {
+        int value = payload[index];
+        switch (getKind(index)) {
+            case STYLESHEET: return new Stylesheet();
+            case STYLERULE: return new Stylerule();
+            case DECLARATION: return new Declaration();
+            case PROPERTY_NAME: return new PropertyName(strings.get(value));
+            case VARIABLE_ASSIGNMENT: return new VariableAssignment();
+            case VARIABLE_REFERENCE: return new VariableReference(strings.get(value));
+            case IF_CLAUSE: return new IfClause();
+            case ELSE_CLAUSE: return new ElseClause();
+            case FOR_LOOP: return new ForLoop();
+            case LOOP_IDENTIFIER: return new LoopIdentifier(strings.get(value));
+            case ADD_OPERATION: return new AddOperation();
+            case SUBTRACT_OPERATION: return new SubtractOperation();
+            case MULTIPLY_OPERATION: return new MultiplyOperation();
+            case PIXEL_LITERAL: return new PixelLiteral(value);
+            case PERCENTAGE_LITERAL: return new PercentageLiteral(value);
+            case SCALAR_LITERAL: return new ScalarLiteral(value);
+            case COLOR_LITERAL: return new ColorLiteral(value);
+            case BOOL_LITERAL: return new BoolLiteral(value != 0);
+            case ID_SELECTOR: return new IdSelector(strings.get(value));
+            case CLASS_SELECTOR: return new ClassSelector(strings.get(value));
+            case TAG_SELECTOR: return new TagSelector(strings.get(value));
+            default: throw new IllegalArgumentException("Onbekend node type: " + getKind(index));
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public NodeKind getKind(int node) {
+        return NodeKind.fromTag(kind[node]);
+    }
+
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int getPayload(int node) {
+        return payload[node];
+    }
+
+    public int getLine(int node) {
+        return line[node];
+    }
+
+    /**
+     * @return the name or selector text of a node whose payload is a string
+     */
+    public String getString(int node) {
+        return strings.get(payload[node]);
+    }
+
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    public boolean hasError(int node) {
+        return errors.containsKey(node);
+    }
+
+    public String getError(int node) {
+        return errors.get(node);
+    }
+
+    /**
+     * @return the descriptions of all errors, in the order of the nodes
+     */
+    public List<String> getErrors() {
+        return new ArrayList<>(new TreeMap<>(errors).values());
+    }
+
+    /**
+     * Bytes taken by the node arrays and the characters of the string table
+     */
+    public long getFootprint() {
+        long bytes = 5L * Integer.BYTES * kind.length;
+        for (String string : strings) {
+            bytes += string.length();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,168 @@
+package nl.han.ica.icss.flat;
+
+import nl.han.ica.icss.generator.CssFormat;
+import nl.han.ica.icss.serialization.NodeKind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static nl.han.ica.icss.flat.FlatAST.NONE;
+
+/**
+ * Generates the same CSS as the Generator, straight from the arrays of a FlatAST
+ * without building node objects.
+ */
+public class FlatGenerator {
+
+    private boolean minify = false;
+    private FlatAST flat;
+    private StringBuilder output;
+
+    public boolean isMinify() {
+        return minify;
+    }
+
+    public void setMinify(boolean minify) {
+        this.minify = minify;
+    }
+
+    public String generate(FlatAST flat) {
+        this.flat = flat;
+        output = new StringBuilder();
+        if (!minify) {
+            output.append(CssFormat.BANNER);
+        }
+        if (flat.getSize() == 0) {
+            return output.toString();
+        }
+
+        if (minify) {
+            List<Integer> rules = new ArrayList<>();
+            for (int child = flat.getFirstChild(0); child != NONE; child = flat.getNextSibling(child)) {
+                if (flat.getKind(child) == NodeKind.STYLERULE) {
+                    rules.add(child);
+                }
+            }
+            generateMerged(rules);
+        } else {
+            for (int child = flat.getFirstChild(0); child != NONE; child = flat.getNextSibling(child)) {
+                if (flat.getKind(child) == NodeKind.STYLERULE) {
+                    generateStylerule(child);
+                }
+            }
+        }
+        return output.toString();
+    }
+
+    //The same merge rule as the minify mode of the Generator, see CssFormat.adjacentWithSameSelectors
+    private void generateMerged(List<Integer> rules) {
+        for (List<Integer> run : CssFormat.adjacentWithSameSelectors(rules, this::selectorsOf)) {
+            List<Integer> declarations = new ArrayList<>();
+            for (int rule : run) {
+                declarations.addAll(declarationsOf(rule));
+            }
+            generateSelectors(run.get(0));
+            //The string table holds every name once, so equal names have equal payloads
+            generateDeclarations(CssFormat.withoutOverridden(declarations,
+                    declaration -> flat.getPayload(flat.getFirstChild(declaration))));
+        }
+    }
+
+    //The kind and payload of every selector, equal for rules with the same selectors
+    private List<Integer> selectorsOf(int rule) {
+        List<Integer> selectors = new ArrayList<>();
+        for (int child = flat.getFirstChild(rule); isSelector(child); child = flat.getNextSibling(child)) {
+            selectors.add(flat.getKind(child).ordinal());
+            selectors.add(flat.getPayload(child));
+        }
+        return selectors;
+    }
+
+    private boolean isSelector(int node) {
+        if (node == NONE) {
+            return false;
+        }
+        NodeKind kind = flat.getKind(node);
+        return kind == NodeKind.ID_SELECTOR || kind == NodeKind.CLASS_SELECTOR || kind == NodeKind.TAG_SELECTOR;
+    }
+
+    private List<Integer> declarationsOf(int rule) {
+        List<Integer> declarations = new ArrayList<>();
+        for (int child = flat.getFirstChild(rule); child != NONE; child = flat.getNextSibling(child)) {
+            if (flat.getKind(child) == NodeKind.DECLARATION) {
+                declarations.add(child);
+            }
+        }
+        return declarations;
+    }
+
+    private void generateSelectors(int rule) {
+        boolean first = true;
+        for (int child = flat.getFirstChild(rule); isSelector(child); child = flat.getNextSibling(child)) {
+            if (!first) {
+                output.append(minify ? "," : ", ");
+            }
+            output.append(flat.getString(child));
+            first = false;
+        }
+        output.append(minify ? "{" : " {\n");
+    }
+
+    //Without merging the children can be written as they come, without collecting them first
+    private void generateStylerule(int rule) {
+        generateSelectors(rule);
+        for (int child = flat.getFirstChild(rule); child != NONE; child = flat.getNextSibling(child)) {
+            if (flat.getKind(child) == NodeKind.DECLARATION) {
+                generateDeclaration(child);
+                output.append(";\n");
+            }
+        }
+        output.append("}\n\n");
+    }
+
+    //Minified declarations of a merged rule
+    private void generateDeclarations(List<Integer> declarations) {
+        boolean first = true;
+        for (int declaration : declarations) {
+            if (!first) {
+                output.append(';');
+            }
+            generateDeclaration(declaration);
+            first = false;
+        }
+        output.append('}');
+    }
+
+    private void generateDeclaration(int declaration) {
+        int property = flat.getFirstChild(declaration);
+        output.append(flat.getString(property));
+        output.append(minify ? ":" : ": ");
+        int expression = flat.getNextSibling(property);
+        if (expression != NONE) {
+            generateLiteral(expression);
+        }
+    }
+
+    private void generateLiteral(int node) {
+        switch (flat.getKind(node)) {
+            case PIXEL_LITERAL:
+                output.append(flat.getPayload(node)).append("px");
+                break;
+            case PERCENTAGE_LITERAL:
+                output.append(flat.getPayload(node)).append('%');
+                break;
+            case SCALAR_LITERAL:
+                output.append(flat.getPayload(node));
+                break;
+            case COLOR_LITERAL:
+                generateColor(flat.getPayload(node));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void generateColor(int rgb) {
+        CssFormat.appendColor(output, rgb, minify);
+    }
+}
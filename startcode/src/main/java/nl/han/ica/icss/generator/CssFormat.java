@@ -0,0 +1,77 @@
+package nl.han.ica.icss.generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The parts of the CSS output that every generator has to write the same way,
+ * so the tree and the flat generator give the same CSS.
+ */
+public final class CssFormat {
+
+	public static final String BANNER = "/* Nouri zijn CSS Output */ \n\n";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private CssFormat() { }
+
+	/**
+	 * Writes a color as #rrggbb, minified #aabbcc is written as #abc
+	 * @param rgb the color packed as 0xRRGGBB
+	 */
+	public static void appendColor(StringBuilder output, int rgb, boolean minify) {
+		output.append('#');
+		if (minify && ((rgb >> 4) & 0x0f0f0f) == (rgb & 0x0f0f0f)) {
+			output.append(HEX_DIGITS[(rgb >> 16) & 0xf]);
+			output.append(HEX_DIGITS[(rgb >> 8) & 0xf]);
+			output.append(HEX_DIGITS[rgb & 0xf]);
+			return;
+		}
+		for (int shift = 20; shift >= 0; shift -= 4) {
+			output.append(HEX_DIGITS[(rgb >> shift) & 0xf]);
+		}
+	}
+
+	/**
+	 * The merge rule of minified output: adjacent rules with the same selectors become one rule
+	 * with the declarations of all of them, see {@link #withoutOverridden}. Rules are only merged
+	 * with their neighbours, so the cascade stays the same.
+	 * @param selectors gives the selectors of a rule, compared with equals
+	 * @return the runs of adjacent rules that are written as one, in order
+	 */
+	public static <R> List<List<R>> adjacentWithSameSelectors(List<R> rules, Function<R, ?> selectors) {
+		List<List<R>> runs = new ArrayList<>();
+		List<R> run = null;
+		Object previous = null;
+		for (R rule : rules) {
+			Object current = selectors.apply(rule);
+			if (run == null || !previous.equals(current)) {
+				run = new ArrayList<>();
+				runs.add(run);
+			}
+			run.add(rule);
+			previous = current;
+		}
+		return runs;
+	}
+
+	/**
+	 * Keeps only the last declaration of every property, in their original order
+	 * @param property gives the property name of a declaration
+	 */
+	public static <D> List<D> withoutOverridden(List<D> declarations, Function<D, ?> property) {
+		HashSet<Object> seen = new HashSet<>();
+		List<D> kept = new ArrayList<>();
+		for (int i = declarations.size() - 1; i >= 0; i--) {
+			D declaration = declarations.get(i);
+			if (seen.add(property.apply(declaration))) {
+				kept.add(declaration);
+			}
+		}
+		Collections.reverse(kept);
+		return kept;
+	}
+}
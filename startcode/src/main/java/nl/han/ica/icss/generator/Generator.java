@@ -6,21 +6,227 @@ import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
 public class Generator {
 
+	//Number of rules formatted into one buffer when generating in parallel
+	private static final int CHUNK_SIZE = 256;
+
 	private StringBuilder output;
+	private final ForkJoinPool pool;
+	private boolean minify = false;
+	//Minified rule that may still get the declarations of the next rule, when generating in one pass
+	private Stylerule pending;
+	//When streaming, every generated rule is handed to this instead of kept in output
+	private Consumer<String> sink;
+
+	public Generator() {
+		this(null);
+	}
+
+	/**
+	 * Creates a generator that formats ranges of rules in parallel on the given pool
+	 * @param pool the pool to use, or null to generate sequentially
+	 */
+	public Generator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public boolean isMinify() {
+		return minify;
+	}
+
+	/**
+	 * Minified output has no banner and whitespace, merges adjacent rules with the same selectors,
+	 * drops overridden properties and uses short colors where possible
+	 * @param minify true to generate minified CSS
+	 */
+	public void setMinify(boolean minify) {
+		this.minify = minify;
+	}
 
 	public String generate(AST ast) {
 		output = new StringBuilder();
-		output.append("/* Nouri zijn CSS Output */ \n\n");
-		generateStylesheet(ast.root);
+		if (!minify) {
+			output.append(CssFormat.BANNER);
+		}
+
+		List<Stylerule> rules = new ArrayList<>();
+		boolean spilled = false;
+		for (ASTNode child : ast.root.getChildren()) {
+			if (child instanceof Stylerule) {
+				rules.add((Stylerule) child);
+			} else if (child instanceof SpilledRules) {
+				spilled = true;
+			}
+		}
+		if (spilled) {
+			generateInOnePass(ast.root);
+			return output.toString();
+		}
+		if (minify) {
+			rules = mergeRules(rules);
+		}
+
+		if (pool == null) {
+			for (Stylerule rule : rules) {
+				generateStylerule(rule);
+			}
+		} else {
+			generateParallel(rules);
+		}
 		return output.toString();
 	}
 
-	private void generateStylesheet(Stylesheet node) {
-		for (ASTNode child : node.getChildren()) {
+	/**
+	 * Generates the CSS in one pass and hands it over a rule at a time, so the output never
+	 * has to be in memory as a whole. The parts together are the same as the result of generate(ast).
+	 * @param ast the transformed AST
+	 * @param rules gets the banner and then every generated rule, in order
+	 */
+	public void generate(AST ast, Consumer<String> rules) {
+		output = new StringBuilder();
+		sink = rules;
+		try {
+			if (!minify) {
+				output.append(CssFormat.BANNER);
+				flush();
+			}
+			generateInOnePass(ast.root);
+		} finally {
+			sink = null;
+		}
+	}
+
+	private void flush() {
+		sink.accept(output.toString());
+		output.setLength(0);
+	}
+
+	/*
+	 Merges adjacent rules with the same selectors, see CssFormat.adjacentWithSameSelectors.
+	 The AST itself is not changed.
+	 */
+	private List<Stylerule> mergeRules(List<Stylerule> rules) {
+		List<Stylerule> merged = new ArrayList<>();
+		for (List<Stylerule> run : CssFormat.adjacentWithSameSelectors(rules, rule -> rule.selectors)) {
+			Stylerule rule = new Stylerule();
+			rule.selectors = run.get(0).selectors;
+			for (Stylerule part : run) {
+				rule.body.addAll(part.body);
+			}
+			rule.body = withoutOverriddenDeclarations(rule.body);
+			merged.add(rule);
+		}
+		return merged;
+	}
+
+	/*
+	 Spilled rules are decoded one at a time, so they are generated sequentially in a single pass.
+	 Streamed output is generated this way as well.
+	 Minify only merges a rule into the one before it, which gives the same result as mergeRules.
+	 */
+	private void generateInOnePass(Stylesheet stylesheet) {
+		pending = null;
+		for (ASTNode child : stylesheet.getChildren()) {
 			if (child instanceof Stylerule) {
-				generateStylerule((Stylerule) child);
+				generateNext((Stylerule) child);
+			} else if (child instanceof SpilledRules) {
+				((SpilledRules) child).forEach(this::generateNext);
+			}
+		}
+		generatePending();
+	}
+
+	private void generateNext(Stylerule rule) {
+		if (!minify) {
+			generateStylerule(rule);
+		} else if (pending != null && pending.selectors.equals(rule.selectors)) {
+			pending.body.addAll(rule.body);
+		} else {
+			generatePending();
+			pending = new Stylerule();
+			pending.selectors = rule.selectors;
+			pending.body = new ArrayList<>(rule.body);
+		}
+	}
+
+	private void generatePending() {
+		if (pending != null) {
+			pending.body = withoutOverriddenDeclarations(pending.body);
+			generateStylerule(pending);
+			pending = null;
+		}
+	}
+
+	private ArrayList<ASTNode> withoutOverriddenDeclarations(List<ASTNode> body) {
+		List<ASTNode> declarations = new ArrayList<>();
+		for (ASTNode child : body) {
+			if (child instanceof Declaration) {
+				declarations.add(child);
+			}
+		}
+		return new ArrayList<>(CssFormat.withoutOverridden(declarations,
+				declaration -> ((Declaration) declaration).property.name));
+	}
+
+	/*
+	 Every chunk of rules is formatted into its own buffer, the buffers are
+	 concatenated in order afterwards.
+	 */
+	private void generateParallel(List<Stylerule> rules) {
+		String[] chunks = new String[(rules.size() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+		if (chunks.length > 0) {
+			pool.invoke(new ChunkTask(this, rules, chunks, 0, chunks.length));
+		}
+
+		int length = output.length();
+		for (String chunk : chunks) {
+			length += chunk.length();
+		}
+		output.ensureCapacity(length);
+		for (String chunk : chunks) {
+			output.append(chunk);
+		}
+	}
+
+	private static class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Generator parent;
+		private final List<Stylerule> rules;
+		private final String[] chunks;
+		private final int from;
+		private final int to;
+
+		ChunkTask(Generator parent, List<Stylerule> rules, String[] chunks, int from, int to) {
+			this.parent = parent;
+			this.rules = rules;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				Generator worker = new Generator();
+				worker.minify = parent.minify;
+				worker.output = new StringBuilder();
+				int end = Math.min(rules.size(), (from + 1) * CHUNK_SIZE);
+				for (int i = from * CHUNK_SIZE; i < end; i++) {
+					worker.generateStylerule(rules.get(i));
+				}
+				chunks[from] = worker.output.toString();
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(parent, rules, chunks, from, middle),
+						new ChunkTask(parent, rules, chunks, middle, to));
 			}
 		}
 	}
@@ -29,17 +235,28 @@ public class Generator {
 		for (int i = 0; i < node.selectors.size(); i++) {
 			generateSelector(node.selectors.get(i));
 			if (i < node.selectors.size() - 1) {
-				output.append(", ");
+				output.append(minify ? "," : ", ");
 			}
 		}
-		output.append(" {\n");
+		output.append(minify ? "{" : " {\n");
+		boolean first = true;
 		for (ASTNode child : node.body) {
 			if (child instanceof Declaration) {
+				if (minify && !first) {
+					output.append(';');
+				}
 				generateDeclaration((Declaration) child);
+				if (!minify) {
+					output.append(";\n");
+				}
+				first = false;
 			}
 		}
 
-		output.append("}\n\n");
+		output.append(minify ? "}" : "}\n\n");
+		if (sink != null) {
+			flush();
+		}
 	}
 
 	private void generateSelector(Selector selector) {
@@ -54,12 +271,11 @@ public class Generator {
 
 	private void generateDeclaration(Declaration declaration) {
 		output.append(declaration.property.name);
-		output.append(": ");
+		output.append(minify ? ":" : ": ");
 
 		if (declaration.expression instanceof Literal) {
 			generateLiteral((Literal) declaration.expression);
 		}
-		output.append(";\n");
 	}
 
 	private void generateLiteral(Literal literal) {
@@ -72,7 +288,11 @@ public class Generator {
 		} else if (literal instanceof ScalarLiteral) {
 			output.append(((ScalarLiteral) literal).value);
 		} else if (literal instanceof ColorLiteral) {
-			output.append(((ColorLiteral) literal).value);
+			generateColor(((ColorLiteral) literal).value);
 		}
 	}
-}
\ No newline at end of file
+
+	private void generateColor(int rgb) {
+		CssFormat.appendColor(output, rgb, minify);
+	}
+}
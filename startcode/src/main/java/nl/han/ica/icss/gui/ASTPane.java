@@ -3,11 +3,13 @@ package nl.han.ica.icss.gui;
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
 import javafx.scene.control.TreeCell;
-import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.layout.BorderPane;
 import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.transforms.EvaluationProfile;
+
+import java.util.Locale;
 
 public class ASTPane extends BorderPane {
 
@@ -25,9 +27,21 @@ public class ASTPane extends BorderPane {
                 super.updateItem(item, empty);
 
                 getStyleClass().removeAll("error");
+                setStyle("");
 
                 if(empty) {
                     setText("");
+                } else if(getTreeItem() instanceof ASTTreeItem) {
+                    ASTTreeItem treeItem = (ASTTreeItem) getTreeItem();
+                    setText(treeItem.getLabel());
+                    if(!treeItem.isRange() && item.hasError()) {
+                        getStyleClass().add("error");
+                    }
+                    //The larger the part of the evaluation time, the redder the node
+                    double heat = treeItem.getHeat();
+                    if(heat >= 0.01) {
+                        setStyle(String.format(Locale.ROOT, "-fx-background-color: rgba(255, 0, 0, %.2f);", 0.1 + 0.6 * heat));
+                    }
                 } else {
                     setText(item.getNodeLabel());
                     if(item.hasError()) {
@@ -44,20 +58,20 @@ public class ASTPane extends BorderPane {
         setPrefWidth(400);
 	}
     /**
-     * Updates the panes based on the current content of the AST
+     * Updates the panes based on the current content of the AST.
+     * Tree items are only created for nodes that are expanded, see {@link ASTTreeItem}
      * @param ast
      */
     public void update(AST ast) {
-        content.setRoot(astNodeToTreeItem(ast.root));
+        update(ast, null);
     }
-    private TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
 
-        TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
-        tvNode.setExpanded(true);
-
-        for(ASTNode child : astNode.getChildren()) {
-            tvNode.getChildren().add(astNodeToTreeItem(child));
-        }
-        return tvNode;
+    /**
+     * Shows the AST with the time spent on every node, nodes that took long are highlighted
+     * @param ast the checked AST the profile was made of
+     * @param profile the profile, or null to show the AST only
+     */
+    public void update(AST ast, EvaluationProfile profile) {
+        content.setRoot(new ASTTreeItem(ast.root, profile));
     }
 }
@@ -0,0 +1,145 @@
+package nl.han.ica.icss.gui;
+
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.transforms.EvaluationProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tree item that creates the items of its children the first time they are asked for, which
+ * the TreeView only does when the item is expanded. Nodes with many children get a level of
+ * range items in between, so expanding never creates more than GROUP_SIZE items at once.
+ * Only the first levels of small nodes start expanded.
+ * With a profile the label of a node also shows the time spent evaluating it.
+ */
+public class ASTTreeItem extends TreeItem<ASTNode> {
+
+    public static final int EXPANDED_DEPTH = 3;
+    public static final int GROUP_SIZE = 1000;
+
+    private final int depth;
+    private final EvaluationProfile profile;
+    private final long profileNanos;
+    //The children of the node, or for a range item those of its parent
+    private List<ASTNode> nodes;
+    //A range item shows nodes[from, to), a node item has from -1
+    private final int from;
+    private final int to;
+    private boolean childrenCreated = false;
+
+    public ASTTreeItem(ASTNode node) {
+        this(node, null);
+    }
+
+    /**
+     * @param node the root of the tree
+     * @param profile the evaluation profile of the tree, or null
+     */
+    public ASTTreeItem(ASTNode node, EvaluationProfile profile) {
+        this(node, 0, profile, profile != null ? profile.getTotalNanos() : 0);
+    }
+
+    private ASTTreeItem(ASTNode node, int depth, EvaluationProfile profile, long profileNanos) {
+        super(node);
+        this.depth = depth;
+        this.profile = profile;
+        this.profileNanos = profileNanos;
+        this.from = -1;
+        this.to = -1;
+        setExpanded(depth < EXPANDED_DEPTH && getNodes().size() <= GROUP_SIZE);
+    }
+
+    private ASTTreeItem(ASTNode parent, List<ASTNode> nodes, int from, int to, int depth,
+                        EvaluationProfile profile, long profileNanos) {
+        super(parent);
+        this.depth = depth;
+        this.profile = profile;
+        this.profileNanos = profileNanos;
+        this.nodes = nodes;
+        this.from = from;
+        this.to = to;
+    }
+
+    public boolean isRange() {
+        return from >= 0;
+    }
+
+    /**
+     * @return the label of the node with the number of children, or the indexes of a range
+     */
+    public String getLabel() {
+        if (isRange()) {
+            return "[" + from + ".." + (to - 1) + "]";
+        }
+        int count = getNodes().size();
+        String label = count == 0 ? getValue().getNodeLabel() : getValue().getNodeLabel() + " (" + count + ")";
+        EvaluationProfile.Entry entry = getProfileEntry();
+        if (entry != null) {
+            label += String.format(" [%.2f ms, %.2f ms self, %d nodes]",
+                    entry.getTotalNanos() / 1e6, entry.getSelfNanos() / 1e6, entry.getProducedNodes());
+        }
+        return label;
+    }
+
+    /**
+     * @return the profile of the node, or null when there is none
+     */
+    public EvaluationProfile.Entry getProfileEntry() {
+        return profile == null || isRange() ? null : profile.get(getValue());
+    }
+
+    /**
+     * @return the part of the profiled time spent in the node itself, between 0 and 1
+     */
+    public double getHeat() {
+        EvaluationProfile.Entry entry = getProfileEntry();
+        return entry == null || profileNanos == 0 ? 0 : (double) entry.getSelfNanos() / profileNanos;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return !isRange() && getNodes().isEmpty();
+    }
+
+    @Override
+    public ObservableList<TreeItem<ASTNode>> getChildren() {
+        if (!childrenCreated) {
+            childrenCreated = true;
+            super.getChildren().setAll(createChildren());
+        }
+        return super.getChildren();
+    }
+
+    private List<ASTNode> getNodes() {
+        if (nodes == null) {
+            nodes = getValue().getChildren();
+        }
+        return nodes;
+    }
+
+    private List<TreeItem<ASTNode>> createChildren() {
+        int start = isRange() ? from : 0;
+        int end = isRange() ? to : getNodes().size();
+        List<TreeItem<ASTNode>> children = new ArrayList<>();
+        if (end - start <= GROUP_SIZE) {
+            for (int i = start; i < end; i++) {
+                children.add(new ASTTreeItem(getNodes().get(i), depth + 1, profile, profileNanos));
+            }
+            return children;
+        }
+
+        //Every range holds a power of GROUP_SIZE nodes, so a level never has more than GROUP_SIZE items
+        long step = GROUP_SIZE;
+        while ((end - start + step - 1) / step > GROUP_SIZE) {
+            step *= GROUP_SIZE;
+        }
+        for (long i = start; i < end; i += step) {
+            children.add(new ASTTreeItem(getValue(), nodes, (int) i, (int) Math.min(i + step, end), depth + 1,
+                    profile, profileNanos));
+        }
+        return children;
+    }
+}
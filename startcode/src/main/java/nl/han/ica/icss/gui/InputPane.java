@@ -4,17 +4,31 @@ package nl.han.ica.icss.gui;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
+import javafx.beans.property.StringProperty;
 import javafx.geometry.Insets;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 
 @SuppressWarnings("restriction")
 public class InputPane extends BorderPane {
 	private TextArea content;
 	private Label title;
+	//Lines of the last profile, the most expensive first
+	private ListView<Integer> hotLines;
+	private Map<Integer, String> hotLineLabels = new HashMap<>();
+	private Map<Integer, Double> hotLineHeat = new HashMap<>();
 	
 	public InputPane() {
 		super();
@@ -22,10 +36,90 @@ public class InputPane extends BorderPane {
 		title = new Label("Input (ICSS):");
 		content = new TextArea();
 		title.setPadding(new Insets(5, 5, 5, 5));
+
+		hotLines = new ListView<>();
+		hotLines.setPrefHeight(120);
+		hotLines.setCellFactory(listView -> new ListCell<Integer>() {
+			@Override
+			protected void updateItem(Integer line, boolean empty) {
+				super.updateItem(line, empty);
+				setStyle("");
+				if (empty || line == null) {
+					setText(null);
+				} else {
+					setText(hotLineLabels.get(line));
+					double heat = hotLineHeat.getOrDefault(line, 0.0);
+					if (heat >= 0.01) {
+						setStyle(String.format(Locale.ROOT, "-fx-background-color: rgba(255, 0, 0, %.2f);", 0.1 + 0.6 * heat));
+					}
+				}
+			}
+		});
+		hotLines.getSelectionModel().selectedItemProperty().addListener((observable, oldLine, line) -> {
+			if (line != null) {
+				selectLine(line);
+			}
+		});
+		//Line numbers of the profile are no longer right after an edit
+		content.textProperty().addListener((observable, oldText, text) -> clearProfile());
 		
 		this.setTop(title);
 		this.setCenter(content);
 	}
+	/**
+	 * Shows the lines that took time to evaluate or have errors below the input, the most expensive first.
+	 * Selecting one of them selects the line in the input.
+	 * @param nanosByLine evaluation time per line
+	 * @param errorsByLine number of errors per line
+	 */
+	public void showProfile(Map<Integer, Long> nanosByLine, Map<Integer, Integer> errorsByLine) {
+		long total = 0;
+		for (long nanos : nanosByLine.values()) {
+			total += nanos;
+		}
+		TreeSet<Integer> lines = new TreeSet<>(nanosByLine.keySet());
+		lines.addAll(errorsByLine.keySet());
+
+		hotLineLabels = new HashMap<>();
+		hotLineHeat = new HashMap<>();
+		for (int line : lines) {
+			long nanos = nanosByLine.getOrDefault(line, 0L);
+			double heat = total == 0 ? 0 : (double) nanos / total;
+			StringBuilder label = new StringBuilder(String.format("Line %d: %.2f ms (%.0f%%)", line, nanos / 1e6, heat * 100));
+			int errors = errorsByLine.getOrDefault(line, 0);
+			if (errors > 0) {
+				label.append(", ").append(errors).append(errors == 1 ? " error" : " errors");
+			}
+			hotLineLabels.put(line, label.toString());
+			hotLineHeat.put(line, heat);
+		}
+
+		List<Integer> sorted = new ArrayList<>(lines);
+		sorted.sort(Comparator.comparing((Integer line) -> errorsByLine.getOrDefault(line, 0) > 0).reversed()
+				.thenComparing(line -> nanosByLine.getOrDefault(line, 0L), Comparator.reverseOrder()));
+		hotLines.getItems().setAll(sorted);
+		setBottom(hotLines);
+	}
+	public void clearProfile() {
+		if (getBottom() != null) {
+			setBottom(null);
+			hotLines.getItems().clear();
+		}
+	}
+	private void selectLine(int line) {
+		String text = content.getText();
+		int start = 0;
+		for (int i = 1; i < line && start >= 0; i++) {
+			start = text.indexOf('\n', start);
+			start = start < 0 ? -1 : start + 1;
+		}
+		if (start < 0) {
+			return;
+		}
+		int end = text.indexOf('\n', start);
+		content.selectRange(start, end < 0 ? text.length() : end);
+		content.requestFocus();
+	}
 	public void setText(String text) {
 		this.content.setText(text);
 	}
@@ -39,4 +133,7 @@ public class InputPane extends BorderPane {
 	public String getText() {
 		return content.getText();
 	}
+	public StringProperty textProperty() {
+		return content.textProperty();
+	}
 }
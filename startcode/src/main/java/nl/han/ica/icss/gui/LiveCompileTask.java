@@ -0,0 +1,129 @@
+package nl.han.ica.icss.gui;
+
+import javafx.concurrent.Task;
+import nl.han.ica.icss.Pipeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the whole pipeline on a copy of the input in the background. Every run gets a number,
+ * a run stops as soon as it sees that a newer run was started. The results are only read on
+ * the JavaFX thread after the task succeeded, so the panes can be updated in one go.
+ */
+public class LiveCompileTask extends Task<Void> {
+
+    private final String source;
+    private final long run;
+    private final AtomicLong latestRun;
+
+    private Pipeline pipeline;
+    private final List<String> feedback = new ArrayList<>();
+    private OutputDocument document;
+    private long latency;
+    private boolean superseded = false;
+
+    /**
+     * @param source the ICSS to compile
+     * @param latestRun the number of the newest run, this task is that run when it is created
+     */
+    public LiveCompileTask(String source, AtomicLong latestRun) {
+        this.source = source;
+        this.latestRun = latestRun;
+        this.run = latestRun.incrementAndGet();
+    }
+
+    @Override
+    protected Void call() throws IOException {
+        long start = System.nanoTime();
+        pipeline = new Pipeline();
+        boolean completed = false;
+        try {
+            compile();
+            completed = true;
+        } catch (CancellationException e) {
+            superseded = true;
+        } finally {
+            if (!completed && document != null) {
+                document.close();
+                document = null;
+            }
+        }
+        latency = System.nanoTime() - start;
+        return null;
+    }
+
+    private void compile() throws IOException {
+        pipeline.parseString(source);
+        if (!pipeline.isParsed()) {
+            feedback.addAll(pipeline.getErrors());
+            return;
+        }
+        feedback.add("Parsing succeeded");
+        checkLatest();
+
+        if (!pipeline.check()) {
+            feedback.addAll(pipeline.getErrors());
+            return;
+        }
+        feedback.add("AST is ok!");
+        checkLatest();
+
+        pipeline.transform();
+        feedback.add("Transformation succeeded");
+        checkLatest();
+
+        document = new OutputDocument();
+        pipeline.generate(css -> {
+            checkLatest();
+            document.accept(css);
+        });
+        document.finish();
+        feedback.add("Generating succeeded");
+    }
+
+    private void checkLatest() {
+        if (run != getLatestRun()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @return true when a newer run was started, the results of this run should not be shown then
+     */
+    public boolean isSuperseded() {
+        return superseded || run != getLatestRun();
+    }
+
+    /**
+     * @return the number of the newest run, read between the steps of this run
+     */
+    long getLatestRun() {
+        return latestRun.get();
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public List<String> getFeedback() {
+        return feedback;
+    }
+
+    /**
+     * @return the generated CSS, or null when the input has errors
+     */
+    public OutputDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * @return the time the run took in nanoseconds
+     */
+    public long getLatency() {
+        return latency;
+    }
+}
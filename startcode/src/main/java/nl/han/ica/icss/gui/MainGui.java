@@ -2,25 +2,39 @@ package nl.han.ica.icss.gui;
 
 import com.google.common.io.Resources;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.metrics.SummaryMetricsListener;
+import nl.han.ica.icss.transforms.EvaluationProfile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 //We use this google library, because it makes life so much easier when
 //reading the examples icss files as packaged resource
@@ -43,6 +57,20 @@ public class MainGui extends Application {
     private Button checkButton;
     private Button transformButton;
     private Button generateButton;
+    private Button profileButton;
+
+    //Live mode: compiles everything a while after the last edit
+    private CheckBox liveCheckBox;
+    private Spinner<Integer> delaySpinner;
+    private Label statusLabel;
+    private PauseTransition liveDelay;
+    private final AtomicLong latestRun = new AtomicLong();
+    //One run at a time, a run that is superseded stops at its next stage
+    private final ExecutorService liveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "icss-live-compile");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     //Model
     private Pipeline pipeline;
@@ -95,6 +123,48 @@ public class MainGui extends Application {
             }
         });
 
+        profileButton = new Button("Profile");
+        profileButton.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent e) {
+                me.profile();
+            }
+        });
+
+        //Live mode, bursts of edits only start one run after the delay
+        liveDelay = new PauseTransition(Duration.millis(300));
+        liveDelay.setOnFinished(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent e) {
+                me.compileLive();
+            }
+        });
+        liveCheckBox = new CheckBox("Live");
+        liveCheckBox.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent e) {
+                if (liveCheckBox.isSelected()) {
+                    me.compileLive();
+                } else {
+                    liveDelay.stop();
+                    latestRun.incrementAndGet();
+                    statusLabel.setText("");
+                }
+            }
+        });
+        delaySpinner = new Spinner<>(0, 5000, 300, 50);
+        delaySpinner.setPrefWidth(80);
+        delaySpinner.setEditable(true);
+        delaySpinner.valueProperty().addListener((observable, oldDelay, delay) ->
+                liveDelay.setDuration(Duration.millis(delay)));
+        statusLabel = new Label();
+        statusLabel.setPadding(new Insets(0, 5, 0, 10));
+        inputPane.textProperty().addListener((observable, oldText, text) -> {
+            if (liveCheckBox.isSelected()) {
+                liveDelay.playFromStart();
+            }
+        });
+
         //Create menus
         MenuBar menuBar = new MenuBar();
 
@@ -167,7 +237,9 @@ public class MainGui extends Application {
         //Toolbar
         HBox toolbar = new HBox();
         toolbar.setPadding(new Insets(5, 5, 5, 5));
-        toolbar.getChildren().addAll(new Label("Pipeline: "), parseButton, checkButton, transformButton, generateButton);
+        toolbar.getChildren().addAll(new Label("Pipeline: "), parseButton, checkButton, transformButton, generateButton,
+                profileButton, new Separator(Orientation.VERTICAL), liveCheckBox, new Label(" Delay (ms): "), delaySpinner, statusLabel);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
         updateToolbar();
 
         BorderPane bottom = new BorderPane();
@@ -233,11 +305,125 @@ public class MainGui extends Application {
     private void generate() {
         clear();
         feedbackPane.addLine("Generating output...");
-        outputPane.setText(pipeline.generate());
-        feedbackPane.addLine("Generating succeeded");
+        //The CSS goes to a temporary file, the output pane only reads the part that is visible
+        OutputDocument document = null;
+        try {
+            document = new OutputDocument();
+            pipeline.generate(document);
+            outputPane.setDocument(document);
+            feedbackPane.addLine("Generating succeeded");
+        } catch (IOException | UncheckedIOException e) {
+            feedbackPane.addLine(e.toString());
+            closeQuietly(document);
+        }
+        updateToolbar();
+    }
+
+    /*
+     Runs the whole pipeline with an evaluation profile. The checked AST is shown instead of
+     the transformed one, because the profile is about the nodes that were written.
+     */
+    private void profile() {
+        clear();
+        feedbackPane.addLine("Profiling...");
+        EvaluationProfile profile = new EvaluationProfile();
+        SummaryMetricsListener summary = new SummaryMetricsListener();
+        pipeline.setProfile(profile);
+        pipeline.addMetricsListener(summary);
+        OutputDocument document = null;
+        try {
+            pipeline.parseString(inputPane.getText());
+            if (pipeline.isParsed() && pipeline.check()) {
+                pipeline.transform();
+                document = new OutputDocument();
+                pipeline.generate(document);
+                outputPane.setDocument(document);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            feedbackPane.addLine(e.toString());
+            closeQuietly(document);
+        } finally {
+            pipeline.setProfile(null);
+            pipeline.removeMetricsListener(summary);
+        }
+
+        for (String e : pipeline.getErrors()) {
+            feedbackPane.addLine(e);
+        }
+        feedbackPane.addLine(summary.toString());
+        List<EvaluationProfile.Entry> entries = profile.getEntries();
+        for (EvaluationProfile.Entry entry : entries.subList(0, Math.min(10, entries.size()))) {
+            feedbackPane.addLine(String.format("Line %d, %s: %.2f ms self, %.2f ms total, %d nodes, evaluated %d times",
+                    entry.getNode().getLine(), entry.getNode().getNodeLabel(), entry.getSelfNanos() / 1e6,
+                    entry.getTotalNanos() / 1e6, entry.getProducedNodes(), entry.getCount()));
+        }
+
+        AST checked = pipeline.getCheckedAST();
+        astPane.update(checked, profile);
+        inputPane.showProfile(profile.getSelfNanosByLine(), errorsByLine(checked));
         updateToolbar();
     }
 
+    /*
+     Expressions have no line of their own, their errors count for the line of the nearest node that has one
+     */
+    private static Map<Integer, Integer> errorsByLine(AST ast) {
+        Map<Integer, Integer> errors = new HashMap<>();
+        countErrors(ast.root, 0, errors);
+        return errors;
+    }
+
+    private static void countErrors(ASTNode node, int line, Map<Integer, Integer> errors) {
+        if (node.getLine() > 0) {
+            line = node.getLine();
+        }
+        if (node.hasError() && line > 0) {
+            errors.merge(line, 1, Integer::sum);
+        }
+        for (ASTNode child : node.getChildren()) {
+            countErrors(child, line, errors);
+        }
+    }
+
+    /*
+     Compiles a copy of the input in the background. The panes are only updated when the run
+     is still the latest one when it finishes, and then all at once.
+     */
+    private void compileLive() {
+        liveDelay.stop();
+        LiveCompileTask task = new LiveCompileTask(inputPane.getText(), latestRun);
+        statusLabel.setText("Compiling...");
+        task.setOnSucceeded(event -> {
+            if (task.isSuperseded() || !liveCheckBox.isSelected()) {
+                closeQuietly(task.getDocument());
+                return;
+            }
+            pipeline = task.getPipeline();
+            feedbackPane.setLines(task.getFeedback());
+            astPane.update(pipeline.getAST());
+            outputPane.setDocument(task.getDocument());
+            updateToolbar();
+            statusLabel.setText(String.format("Compiled in %.1f ms", task.getLatency() / 1e6));
+        });
+        task.setOnFailed(event -> {
+            if (!task.isSuperseded()) {
+                feedbackPane.setLines(List.of(task.getException().toString()));
+                statusLabel.setText("Compiling failed");
+            }
+        });
+        liveExecutor.execute(task);
+    }
+
+    private static void closeQuietly(OutputDocument document) {
+        if (document != null) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                System.err.println(e);
+            }
+        }
+    }
+
     private void updateToolbar() {
         //Quick and ugly way...
         checkButton.setDisable(true);
@@ -0,0 +1,146 @@
+package nl.han.ica.icss.gui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Generated CSS kept in a temporary file instead of in memory. The rules are collected into
+ * chunks of about CHUNK_SIZE characters, a chunk always ends after a rule. Only the offsets
+ * of the chunks and the last CACHED_CHUNKS chunks that were read are kept on the heap.
+ */
+public class OutputDocument implements Consumer<String>, Closeable {
+
+    public static final int CHUNK_SIZE = 4096;
+    private static final int CACHED_CHUNKS = 64;
+
+    private final Path file;
+    private final FileChannel channel;
+    //offsets[i] is where chunk i starts, offsets[chunkCount] where the file ends
+    private long[] offsets = new long[64];
+    private int chunkCount = 0;
+    private final StringBuilder current = new StringBuilder();
+    private boolean finished = false;
+
+    private final Map<Integer, String> cache = new LinkedHashMap<Integer, String>(CACHED_CHUNKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > CACHED_CHUNKS;
+        }
+    };
+
+    public OutputDocument() throws IOException {
+        file = Files.createTempFile("icss-output", ".css");
+        file.toFile().deleteOnExit();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Adds generated CSS to the end of the document
+     * @param css the banner or a complete rule
+     */
+    @Override
+    public void accept(String css) {
+        if (finished) {
+            throw new IllegalStateException("Document is al afgesloten");
+        }
+        current.append(css);
+        if (current.length() >= CHUNK_SIZE) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Writes the last chunk, after this the document can be read
+     */
+    public void finish() {
+        if (!finished) {
+            if (current.length() > 0) {
+                writeChunk();
+            }
+            finished = true;
+        }
+    }
+
+    private void writeChunk() {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(current.toString());
+        current.setLength(0);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes, offsets[chunkCount] + bytes.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (chunkCount + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[chunkCount + 1] = offsets[chunkCount] + bytes.limit();
+        chunkCount++;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return the number of bytes of CSS that were written to the file
+     */
+    public long getSize() {
+        return offsets[chunkCount];
+    }
+
+    /**
+     * Reads a chunk back from the file, the chunks that were read last are cached
+     * @param index the number of the chunk
+     * @return the text of the chunk
+     */
+    public String getChunk(int index) {
+        if (index < 0 || index >= chunkCount) {
+            throw new IndexOutOfBoundsException("Chunk " + index + " bestaat niet, er zijn er " + chunkCount);
+        }
+        String chunk = cache.get(index);
+        if (chunk == null) {
+            ByteBuffer bytes = ByteBuffer.allocate((int) (offsets[index + 1] - offsets[index]));
+            try {
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, offsets[index] + bytes.position()) < 0) {
+                        throw new IOException("Onverwacht einde van " + file);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunk = StandardCharsets.UTF_8.decode(bytes.flip()).toString();
+            cache.put(index, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Copies the CSS to a file without reading it into memory
+     * @param target the file to write
+     */
+    public void writeTo(Path target) throws IOException {
+        finish();
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.clear();
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -1,19 +1,26 @@
 package nl.han.ica.icss.gui;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
 
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
-import javafx.scene.control.TextArea;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.layout.BorderPane;
 
+/**
+ * Shows the generated CSS as a list of chunks of an {@link OutputDocument}. The ListView only
+ * creates cells for the visible rows, so only the visible chunks are read from the document.
+ */
 @SuppressWarnings("restriction")
 public class OutputPane extends BorderPane {
 
 	private Label title;
-	private TextArea content;
+	private ListView<Integer> content;
+	private OutputDocument document;
 
 	public OutputPane () {
 		super();
@@ -21,23 +28,62 @@ public class OutputPane extends BorderPane {
 		title = new Label("Output (CSS):");
 		title.setPadding(new Insets(5, 5, 5, 5));
 
-		content = new TextArea();
-		content.setEditable(false);
+		content = new ListView<>();
+		content.setCellFactory(listView -> new ListCell<Integer>() {
+			@Override
+			protected void updateItem(Integer index, boolean empty) {
+				super.updateItem(index, empty);
+				setWrapText(true);
+				setPrefWidth(0);
+				if (empty || index == null || document == null) {
+					setText(null);
+				} else {
+					setText(document.getChunk(index));
+				}
+			}
+		});
 
 		setTop(title);
 		setCenter(content);
 	}
-	public void setText(String text) {
-		content.setText(text);
+
+	/**
+	 * Shows a finished document, the previous document is closed
+	 * @param document the generated CSS, or null to show nothing
+	 */
+	public void setDocument(OutputDocument document) {
+		OutputDocument previous = this.document;
+		this.document = document;
+
+		ObservableList<Integer> chunks = FXCollections.observableArrayList();
+		if (document != null) {
+			document.finish();
+			for (int i = 0; i < document.getChunkCount(); i++) {
+				chunks.add(i);
+			}
+			title.setText("Output (CSS, " + document.getSize() + " bytes):");
+		} else {
+			title.setText("Output (CSS):");
+		}
+		content.setItems(chunks);
+
+		if (previous != null) {
+			try {
+				previous.close();
+			} catch (IOException exception) {
+				System.err.println(exception);
+			}
+		}
 	}
-	public String getText() {
-		return content.getText();
+	public OutputDocument getDocument() {
+		return document;
 	}
 	public void writeToFile(File file) {
+		if (document == null) {
+			return;
+		}
 		try {
-			PrintStream out = new PrintStream(new FileOutputStream(file));
-			out.print(this.getText());
-			out.close();
+			document.writeTo(file.toPath());
 		} catch(Exception exception) {
 			System.err.println(exception);
 		}
@@ -0,0 +1,12 @@
+package nl.han.ica.icss.metrics;
+
+/**
+ * Receives the measurements of every pipeline stage, see Pipeline.addMetricsListener
+ */
+public interface MetricsListener {
+    /**
+     * Called on the thread that ran the stage, right after it finished
+     * @param metrics measurements of the stage
+     */
+    void stageCompleted(StageMetrics metrics);
+}
@@ -0,0 +1,38 @@
+package nl.han.ica.icss.metrics;
+
+import nl.han.ica.datastructures.HANQueue;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.SpilledRules;
+
+public class NodeCounter {
+
+    private NodeCounter() { }
+
+    /*
+     Breadth-first, so a stylesheet with deeply nested rules cannot overflow the call stack.
+     */
+    public static int count(AST ast) {
+        if (ast == null || ast.root == null) {
+            return 0;
+        }
+        HANQueue<ASTNode> queue = new HANQueue<>();
+        queue.enqueue(ast.root);
+        int count = 0;
+        while (!queue.isEmpty()) {
+            ASTNode node = queue.dequeue();
+            if (node instanceof SpilledRules) {
+                //Counted as the rules it holds, so spilling does not change the counts
+                count += ((SpilledRules) node).getNodeCount();
+                continue;
+            }
+            count++;
+            for (ASTNode child : node.getChildren()) {
+                if (child != null) {
+                    queue.enqueue(child);
+                }
+            }
+        }
+        return count;
+    }
+}
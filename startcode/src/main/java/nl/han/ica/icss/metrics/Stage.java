@@ -0,0 +1,8 @@
+package nl.han.ica.icss.metrics;
+
+public enum Stage {
+    PARSE,
+    CHECK,
+    TRANSFORM,
+    GENERATE
+}
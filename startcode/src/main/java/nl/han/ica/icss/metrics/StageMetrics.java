@@ -0,0 +1,71 @@
+package nl.han.ica.icss.metrics;
+
+/**
+ * Measurements of one pipeline stage for one stylesheet.
+ * Counts that do not apply to a stage are -1, like the token count of the check stage.
+ */
+public class StageMetrics {
+
+    private final Stage stage;
+    private final String sourceName;
+    private final long wallNanos;
+    private final long allocatedBytes;
+    private final int nodesBefore;
+    private final int nodesAfter;
+    private final int tokenCount;
+    private final int errorCount;
+
+    public StageMetrics(Stage stage, String sourceName, long wallNanos, long allocatedBytes,
+                        int nodesBefore, int nodesAfter, int tokenCount, int errorCount) {
+        this.stage = stage;
+        this.sourceName = sourceName;
+        this.wallNanos = wallNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.nodesBefore = nodesBefore;
+        this.nodesAfter = nodesAfter;
+        this.tokenCount = tokenCount;
+        this.errorCount = errorCount;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return bytes allocated by the thread that ran the stage, -1 when the JVM cannot measure it.
+     * Allocations on the worker threads of a parallel stage are not included.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getNodesBefore() {
+        return nodesBefore;
+    }
+
+    public int getNodesAfter() {
+        return nodesAfter;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %.2f ms, %d bytes, nodes %d -> %d, tokens %d, errors %d",
+                sourceName, stage, wallNanos / 1e6, allocatedBytes, nodesBefore, nodesAfter, tokenCount, errorCount);
+    }
+}
@@ -0,0 +1,62 @@
+package nl.han.ica.icss.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures wall time and allocated bytes of the current thread from start() until stop().
+ * Only the allocations of the thread that calls start() and stop() are seen, work that a stage
+ * hands to a thread pool (the parallel check, transform and generate) is not included.
+ * The counts for the metrics are passed after stop(), so counting nodes is not measured.
+ */
+public class StageTimer {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final long startNanos;
+    private final long startBytes;
+    private long wallNanos = -1;
+    private long allocatedBytes;
+
+    private StageTimer() {
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    public static StageTimer start() {
+        return new StageTimer();
+    }
+
+    /**
+     * Stops measuring, calls after the first have no effect
+     */
+    public void stop() {
+        if (isStopped()) {
+            return;
+        }
+        wallNanos = System.nanoTime() - startNanos;
+        long endBytes = allocatedBytes();
+        allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+    }
+
+    public boolean isStopped() {
+        return wallNanos >= 0;
+    }
+
+    /**
+     * @return the measurements of the stopped timer with the given counts
+     */
+    public StageMetrics getMetrics(Stage stage, String sourceName, int nodesBefore, int nodesAfter, int tokenCount, int errorCount) {
+        if (!isStopped()) {
+            throw new IllegalStateException("De timer van " + stage + " is nog niet gestopt");
+        }
+        return new StageMetrics(stage, sourceName, wallNanos, allocatedBytes, nodesBefore, nodesAfter, tokenCount, errorCount);
+    }
+
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
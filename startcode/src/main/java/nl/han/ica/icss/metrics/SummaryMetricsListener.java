@@ -0,0 +1,52 @@
+package nl.han.ica.icss.metrics;
+
+import java.util.EnumMap;
+
+/**
+ * Adds up the measurements per stage over all compiled stylesheets.
+ */
+public class SummaryMetricsListener implements MetricsListener {
+
+    private final EnumMap<Stage, long[]> totals = new EnumMap<>(Stage.class);
+
+    //Indices into the totals of a stage
+    private static final int RUNS = 0;
+    private static final int NANOS = 1;
+    private static final int BYTES = 2;
+    private static final int NODES = 3;
+    private static final int ERRORS = 4;
+
+    @Override
+    public synchronized void stageCompleted(StageMetrics metrics) {
+        long[] total = totals.computeIfAbsent(metrics.getStage(), stage -> new long[5]);
+        total[RUNS]++;
+        total[NANOS] += metrics.getWallNanos();
+        total[BYTES] += Math.max(0, metrics.getAllocatedBytes());
+        total[NODES] += Math.max(0, metrics.getNodesAfter());
+        total[ERRORS] += Math.max(0, metrics.getErrorCount());
+    }
+
+    public synchronized long getTotalNanos(Stage stage) {
+        long[] total = totals.get(stage);
+        return total == null ? 0 : total[NANOS];
+    }
+
+    public synchronized long getRuns(Stage stage) {
+        long[] total = totals.get(stage);
+        return total == null ? 0 : total[RUNS];
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-10s %6s %12s %14s %10s %7s%n", "stage", "runs", "time (ms)", "allocated", "nodes", "errors"));
+        for (Stage stage : Stage.values()) {
+            long[] total = totals.get(stage);
+            if (total != null) {
+                summary.append(String.format("%-10s %6d %12.2f %14d %10d %7d%n", stage, total[RUNS],
+                        total[NANOS] / 1e6, total[BYTES], total[NODES], total[ERRORS]));
+            }
+        }
+        return summary.toString();
+    }
+}
@@ -3,7 +3,7 @@ package nl.han.ica.icss.parser;
 import java.util.Stack;
 
 
-import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.HANArrayStack;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.loops.ForLoop;
@@ -20,11 +20,24 @@ public class ASTListener extends ICSSBaseListener {
 
 	private AST ast;
 
-	private HANStack<ASTNode> currentContainer;
+	private HANArrayStack<ASTNode> currentContainer;
+
+	//Shares identical constant expressions between rules
+	private ExpressionInterner expressions = new ExpressionInterner();
 
 	public ASTListener() {
+		this(new HANArrayStack<>());
+	}
+
+	/**
+	 * Builds the AST with the given stack for the open containers, it is cleared first.
+	 * Passing the same stack for every parse avoids growing a new one each time.
+	 * @param containers stack to reuse
+	 */
+	public ASTListener(HANArrayStack<ASTNode> containers) {
 		ast = new AST();
-		currentContainer = new HANStack<>(); // nog aanpassen naar HAN STACK
+		currentContainer = containers;
+		currentContainer.clear();
 	}
 
 	public AST getAST() {
@@ -49,6 +62,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterRuleset(ICSSParser.RulesetContext ctx) {
 		Stylerule stylerule = new Stylerule();
+		stylerule.setLine(ctx.getStart().getLine());
 		currentContainer.push(stylerule);
 	}
 
@@ -99,6 +113,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
 		Declaration declaration = new Declaration();
+		declaration.setLine(ctx.getStart().getLine());
 		currentContainer.push(declaration);
 	}
 
@@ -131,7 +146,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitAddOperation(ICSSParser.AddOperationContext ctx) {
 		AddOperation addOperation = (AddOperation) currentContainer.pop();
-		currentContainer.peek().addChild(addOperation);
+		currentContainer.peek().addChild(expressions.intern(addOperation));
 	}
 
 	@Override
@@ -143,7 +158,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitMultiplyOperation(ICSSParser.MultiplyOperationContext ctx) {
 		MultiplyOperation multiplyOperation = (MultiplyOperation) currentContainer.pop();
-		currentContainer.peek().addChild(multiplyOperation);
+		currentContainer.peek().addChild(expressions.intern(multiplyOperation));
 	}
 
 	@Override
@@ -155,7 +170,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitSubtractOperation(ICSSParser.SubtractOperationContext ctx) {
 		SubtractOperation subtractOperation = (SubtractOperation) currentContainer.pop();
-		currentContainer.peek().addChild(subtractOperation);
+		currentContainer.peek().addChild(expressions.intern(subtractOperation));
 	}
 
 	@Override
@@ -167,7 +182,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitPixelLiteral(ICSSParser.PixelLiteralContext ctx) {
 		PixelLiteral pixelLiteral = (PixelLiteral) currentContainer.pop();
-		currentContainer.peek().addChild(pixelLiteral);
+		currentContainer.peek().addChild(expressions.intern(pixelLiteral));
 	}
 
 
@@ -181,7 +196,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitScalarLiteral(ICSSParser.ScalarLiteralContext ctx) {
 		ScalarLiteral scalarLiteral = (ScalarLiteral) currentContainer.pop();
-		currentContainer.peek().addChild(scalarLiteral);
+		currentContainer.peek().addChild(expressions.intern(scalarLiteral));
 	}
 
 
@@ -194,7 +209,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitPercentageLiteral(ICSSParser.PercentageLiteralContext ctx) {
 		PercentageLiteral percentageLiteral = (PercentageLiteral) currentContainer.pop();
-		currentContainer.peek().addChild(percentageLiteral);
+		currentContainer.peek().addChild(expressions.intern(percentageLiteral));
 	}
 
 
@@ -207,7 +222,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitColorLiteral(ICSSParser.ColorLiteralContext ctx) {
 		ColorLiteral colorLiteral = (ColorLiteral) currentContainer.pop();
-		currentContainer.peek().addChild(colorLiteral);
+		currentContainer.peek().addChild(expressions.intern(colorLiteral));
 	}
 
 	@Override
@@ -219,7 +234,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitBoolLiteral(ICSSParser.BoolLiteralContext ctx) {
 		BoolLiteral boolLiteral = (BoolLiteral) currentContainer.pop();
-		currentContainer.peek().addChild(boolLiteral);
+		currentContainer.peek().addChild(expressions.intern(boolLiteral));
 	}
 
 	@Override
@@ -238,6 +253,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
 		VariableAssignment variableAssignment = new VariableAssignment();
+		variableAssignment.setLine(ctx.getStart().getLine());
 		currentContainer.push(variableAssignment);
 	}
 
@@ -262,6 +278,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterIfclause(ICSSParser.IfclauseContext ctx) {
 		IfClause ifClause = new IfClause();
+		ifClause.setLine(ctx.getStart().getLine());
 		currentContainer.push(ifClause);
 	}
 
@@ -274,6 +291,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterElseclause(ICSSParser.ElseclauseContext ctx) {
 		ElseClause elseClause= new ElseClause();
+		elseClause.setLine(ctx.getStart().getLine());
 		currentContainer.push(elseClause);
 	}
 
@@ -286,6 +304,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterForloop(ICSSParser.ForloopContext ctx) {
 		ForLoop forLoop = new ForLoop();
+		forLoop.setLine(ctx.getStart().getLine());
 		currentContainer.push(forLoop);
 	}
 
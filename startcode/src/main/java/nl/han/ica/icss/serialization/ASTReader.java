@@ -0,0 +1,149 @@
+package nl.han.ica.icss.serialization;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.loops.ForLoop;
+import nl.han.ica.icss.ast.loops.LoopIdentifier;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads an AST written by {@link ASTWriter}. Constant expressions are shared again
+ * through an {@link ExpressionInterner}, just like the parser does.
+ */
+public class ASTReader {
+
+    private ByteBuffer buffer;
+    private String[] strings;
+    private ExpressionInterner expressions;
+
+    public AST read(byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads the file through a memory mapping instead of copying it onto the heap first.
+     */
+    public AST read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public AST read(ByteBuffer input) {
+        buffer = input.duplicate();
+        expressions = new ExpressionInterner();
+
+        for (byte expected : ASTWriter.MAGIC) {
+            if (buffer.get() != expected) {
+                throw new IllegalArgumentException("Geen binaire ICSS AST");
+            }
+        }
+        int version = buffer.get();
+        if (version != ASTWriter.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Onbekende versie van het binaire formaat: " + version);
+        }
+
+        strings = new String[readVarint()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        ASTNode root = readNode();
+        if (!(root instanceof Stylesheet)) {
+            throw new IllegalArgumentException("De root van de AST moet een stylesheet zijn");
+        }
+        return new AST((Stylesheet) root);
+    }
+
+    private ASTNode readNode() {
+        int tag = buffer.get() & 0xff;
+        if (tag == ASTWriter.NULL_TAG) {
+            return null;
+        }
+        String error = null;
+        if ((tag & ASTWriter.ERROR_FLAG) != 0) {
+            error = readString();
+        }
+        int line = (tag & ASTWriter.LINE_FLAG) != 0 ? readVarint() : 0;
+        NodeKind kind = NodeKind.fromTag(tag & ~(ASTWriter.ERROR_FLAG | ASTWriter.LINE_FLAG));
+
+        ASTNode node = createNode(kind);
+        node.setLine(line);
+        if (kind.isContainer()) {
+            int childCount = readVarint();
+            for (int i = 0; i < childCount; i++) {
+                ASTNode child = readNode();
+                if (child != null) {
+                    node.addChild(child);
+                }
+            }
+        }
+        if (error != null) {
+            node.setError(error);
+        } else if (node instanceof Expression) {
+            node = expressions.intern((Expression) node);
+        }
+        return node;
+    }
+
+    private ASTNode createNode(NodeKind kind) {
+        switch (kind) {
+            case STYLESHEET: return new Stylesheet();
+            case STYLERULE: return new Stylerule();
+            case DECLARATION: return new Declaration();
+            case PROPERTY_NAME: return new PropertyName(readString());
+            case VARIABLE_ASSIGNMENT: return new VariableAssignment();
+            case VARIABLE_REFERENCE: return new VariableReference(readString());
+            case IF_CLAUSE: return new IfClause();
+            case ELSE_CLAUSE: return new ElseClause();
+            case FOR_LOOP: return new ForLoop();
+            case LOOP_IDENTIFIER: return new LoopIdentifier(readString());
+            case ADD_OPERATION: return new AddOperation();
+            case SUBTRACT_OPERATION: return new SubtractOperation();
+            case MULTIPLY_OPERATION: return new MultiplyOperation();
+            case PIXEL_LITERAL: return new PixelLiteral(unzigzag(readVarint()));
+            case PERCENTAGE_LITERAL: return new PercentageLiteral(unzigzag(readVarint()));
+            case SCALAR_LITERAL: return new ScalarLiteral(unzigzag(readVarint()));
+            case COLOR_LITERAL: return new ColorLiteral(readVarint());
+            case BOOL_LITERAL: return new BoolLiteral(buffer.get() != 0);
+            case ID_SELECTOR: return new IdSelector(readString());
+            case CLASS_SELECTOR: return new ClassSelector(readString());
+            case TAG_SELECTOR: return new TagSelector(readString());
+            default: throw new IllegalArgumentException("Onbekend node type: " + kind);
+        }
+    }
+
+    private String readString() {
+        return strings[readVarint()];
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
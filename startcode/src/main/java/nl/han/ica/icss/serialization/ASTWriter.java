@@ -0,0 +1,165 @@
+package nl.han.ica.icss.serialization;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.loops.LoopIdentifier;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Writes an AST in the compact binary format read by {@link ASTReader}.
+ *
+ * Layout: the magic "ICSB", a format version byte, the string table and then the nodes
+ * in pre-order. Every node starts with its {@link NodeKind} tag; the high bit of the tag
+ * marks a node with a semantic error, followed by the string index of its description, the
+ * next bit marks a node with a source line, followed by the line.
+ * Strings (names, selectors, errors) are stored once and referred to by index, numbers
+ * are stored as (zigzag) varints. Container nodes end with their child count and children.
+ * A {@link SpilledRules} block is written as the rules it holds.
+ */
+public class ASTWriter {
+
+    static final byte[] MAGIC = {'I', 'C', 'S', 'B'};
+    static final int FORMAT_VERSION = 2;
+    static final int ERROR_FLAG = 0x80;
+    static final int LINE_FLAG = 0x40;
+    static final int NULL_TAG = 0x7f;
+
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private ByteArrayOutputStream nodes;
+
+    public byte[] write(AST ast) {
+        stringIndex.clear();
+        strings.clear();
+        nodes = new ByteArrayOutputStream();
+        writeNode(ast.root);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(nodes.size() + 64);
+        output.writeBytes(MAGIC);
+        output.write(FORMAT_VERSION);
+        writeVarint(output, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(output, bytes.length);
+            output.writeBytes(bytes);
+        }
+        output.writeBytes(nodes.toByteArray());
+        return output.toByteArray();
+    }
+
+    public void write(AST ast, Path file) throws IOException {
+        Files.write(file, write(ast));
+    }
+
+    private void writeNode(ASTNode node) {
+        if (node == null) {
+            nodes.write(NULL_TAG);
+            return;
+        }
+        NodeKind kind = NodeKind.of(node);
+        int tag = kind.ordinal();
+        if (node.hasError()) {
+            tag |= ERROR_FLAG;
+        }
+        if (node.getLine() > 0) {
+            tag |= LINE_FLAG;
+        }
+        nodes.write(tag);
+        if (node.hasError()) {
+            writeString(node.getError().description);
+        }
+        if (node.getLine() > 0) {
+            writeVarint(nodes, node.getLine());
+        }
+
+        switch (kind) {
+            case PROPERTY_NAME:
+                writeString(((PropertyName) node).name);
+                break;
+            case VARIABLE_REFERENCE:
+                writeString(((VariableReference) node).name);
+                break;
+            case LOOP_IDENTIFIER:
+                writeString(((LoopIdentifier) node).name);
+                break;
+            case PIXEL_LITERAL:
+                writeVarint(nodes, zigzag(((PixelLiteral) node).value));
+                break;
+            case PERCENTAGE_LITERAL:
+                writeVarint(nodes, zigzag(((PercentageLiteral) node).value));
+                break;
+            case SCALAR_LITERAL:
+                writeVarint(nodes, zigzag(((ScalarLiteral) node).value));
+                break;
+            case COLOR_LITERAL:
+                writeVarint(nodes, ((ColorLiteral) node).value);
+                break;
+            case BOOL_LITERAL:
+                nodes.write(((BoolLiteral) node).value ? 1 : 0);
+                break;
+            case ID_SELECTOR:
+                writeString(((IdSelector) node).id);
+                break;
+            case CLASS_SELECTOR:
+                writeString(((ClassSelector) node).cls);
+                break;
+            case TAG_SELECTOR:
+                writeString(((TagSelector) node).tag);
+                break;
+            default:
+                break;
+        }
+
+        if (kind.isContainer()) {
+            List<ASTNode> children = node.getChildren();
+            int count = children.size();
+            for (ASTNode child : children) {
+                if (child instanceof SpilledRules) {
+                    count += ((SpilledRules) child).getRuleCount() - 1;
+                }
+            }
+            writeVarint(nodes, count);
+            for (ASTNode child : children) {
+                if (child instanceof SpilledRules) {
+                    //Written as the rules it holds, they are read back as ordinary rules
+                    ((SpilledRules) child).forEach(this::writeNode);
+                } else {
+                    writeNode(child);
+                }
+            }
+        }
+    }
+
+    private void writeString(String string) {
+        Integer index = stringIndex.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+        writeVarint(nodes, index);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7f) != 0) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+}
@@ -0,0 +1,87 @@
+package nl.han.ica.icss.serialization;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.loops.ForLoop;
+import nl.han.ica.icss.ast.loops.LoopIdentifier;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/*
+ * One tag per concrete AST node class. The ordinal is the tag in the binary format,
+ * so new kinds may only be added at the end.
+ */
+public enum NodeKind {
+    STYLESHEET(true),
+    STYLERULE(true),
+    DECLARATION(true),
+    PROPERTY_NAME(false),
+    VARIABLE_ASSIGNMENT(true),
+    VARIABLE_REFERENCE(false),
+    IF_CLAUSE(true),
+    ELSE_CLAUSE(true),
+    FOR_LOOP(true),
+    LOOP_IDENTIFIER(false),
+    ADD_OPERATION(true),
+    SUBTRACT_OPERATION(true),
+    MULTIPLY_OPERATION(true),
+    PIXEL_LITERAL(false),
+    PERCENTAGE_LITERAL(false),
+    SCALAR_LITERAL(false),
+    COLOR_LITERAL(false),
+    BOOL_LITERAL(false),
+    ID_SELECTOR(false),
+    CLASS_SELECTOR(false),
+    TAG_SELECTOR(false);
+
+    private static final NodeKind[] VALUES = values();
+
+    private final boolean container;
+
+    NodeKind(boolean container) {
+        this.container = container;
+    }
+
+    /**
+     * @return true when nodes of this kind have children, false when all content is in the payload
+     */
+    public boolean isContainer() {
+        return container;
+    }
+
+    public static NodeKind fromTag(int tag) {
+        if (tag < 0 || tag >= VALUES.length) {
+            throw new IllegalArgumentException("Onbekend node type: " + tag);
+        }
+        return VALUES[tag];
+    }
+
+    public static NodeKind of(ASTNode node) {
+        if (node instanceof Stylesheet) return STYLESHEET;
+        if (node instanceof Stylerule) return STYLERULE;
+        if (node instanceof Declaration) return DECLARATION;
+        if (node instanceof PropertyName) return PROPERTY_NAME;
+        if (node instanceof VariableAssignment) return VARIABLE_ASSIGNMENT;
+        if (node instanceof VariableReference) return VARIABLE_REFERENCE;
+        if (node instanceof IfClause) return IF_CLAUSE;
+        if (node instanceof ElseClause) return ELSE_CLAUSE;
+        if (node instanceof ForLoop) return FOR_LOOP;
+        if (node instanceof LoopIdentifier) return LOOP_IDENTIFIER;
+        if (node instanceof AddOperation) return ADD_OPERATION;
+        if (node instanceof SubtractOperation) return SUBTRACT_OPERATION;
+        if (node instanceof MultiplyOperation) return MULTIPLY_OPERATION;
+        if (node instanceof PixelLiteral) return PIXEL_LITERAL;
+        if (node instanceof PercentageLiteral) return PERCENTAGE_LITERAL;
+        if (node instanceof ScalarLiteral) return SCALAR_LITERAL;
+        if (node instanceof ColorLiteral) return COLOR_LITERAL;
+        if (node instanceof BoolLiteral) return BOOL_LITERAL;
+        if (node instanceof IdSelector) return ID_SELECTOR;
+        if (node instanceof ClassSelector) return CLASS_SELECTOR;
+        if (node instanceof TagSelector) return TAG_SELECTOR;
+        throw new IllegalArgumentException("Geen binaire vorm voor " + node.getNodeLabel());
+    }
+}
@@ -0,0 +1,116 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.Literal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Memo table for the Evaluator. An entry is keyed by the (structural) expression and
+ * the version of the variable environment it was evaluated in, so a hit is only
+ * possible when every variable still resolves to the same value.
+ * The least recently used entry is evicted once the table is full.
+ */
+public class EvaluationCache {
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Literal> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public EvaluationCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Literal> eldest) {
+                return size() > EvaluationCache.this.capacity;
+            }
+        };
+    }
+
+    Literal get(Expression expression, long environmentVersion) {
+        if (capacity == 0) {
+            return null;
+        }
+        Literal value = entries.get(new Key(expression, environmentVersion));
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    void put(Expression expression, long environmentVersion, Literal value) {
+        if (capacity == 0) {
+            return;
+        }
+        entries.put(new Key(expression, environmentVersion), value);
+    }
+
+    /*
+     Adds the counters of a worker's cache, used when the evaluation is split over several threads.
+     */
+    synchronized void addStatistics(EvaluationCache other) {
+        hits += other.hits;
+        misses += other.misses;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationCache{size=" + size() + "/" + capacity + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    private static final class Key {
+        private final Expression expression;
+        private final long environmentVersion;
+        private final int hash;
+
+        Key(Expression expression, long environmentVersion) {
+            this.expression = expression;
+            this.environmentVersion = environmentVersion;
+            this.hash = 31 * expression.hashCode() + Long.hashCode(environmentVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return environmentVersion == key.environmentVersion
+                    && hash == key.hash
+                    && expression.equals(key.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
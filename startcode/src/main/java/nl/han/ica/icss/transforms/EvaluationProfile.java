@@ -0,0 +1,152 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.ASTNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Time spent by the Evaluator per node of the checked AST, and the number of nodes every
+ * node produced. Nodes are kept by identity, equal rules on different lines are different entries.
+ *
+ * The total time of a node includes the nodes inside it, its self time does not. The self
+ * times of all nodes add up to the time spent in the profiled nodes, so they can be summed per line.
+ * Expressions have no line of their own, their time counts for the line of the node they are part of.
+ */
+public class EvaluationProfile {
+
+    public static class Entry {
+        private final ASTNode node;
+        private int count;
+        private long totalNanos;
+        private long selfNanos;
+        private long producedNodes;
+
+        Entry(ASTNode node) {
+            this.node = node;
+        }
+
+        public ASTNode getNode() {
+            return node;
+        }
+
+        /**
+         * @return the number of times the node was evaluated, more than once inside a loop
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        /**
+         * @return the number of rules or declarations the node added to the evaluated tree
+         */
+        public long getProducedNodes() {
+            return producedNodes;
+        }
+    }
+
+    private final IdentityHashMap<ASTNode, Entry> entries = new IdentityHashMap<>();
+
+    private final TreeMap<Integer, Long> selfNanosByLine = new TreeMap<>();
+
+    //Start time, time spent in nested nodes and source line, for every node that is being evaluated
+    private long[] starts = new long[16];
+    private long[] nestedNanos = new long[16];
+    private int[] lines = new int[16];
+    private int depth = 0;
+
+    /**
+     * Starts timing a node, every begin must be followed by an end of the same node
+     * @param node the node of the checked AST that is evaluated
+     */
+    void begin(ASTNode node) {
+        if (depth == starts.length) {
+            starts = Arrays.copyOf(starts, depth * 2);
+            nestedNanos = Arrays.copyOf(nestedNanos, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2);
+        }
+        nestedNanos[depth] = 0;
+        lines[depth] = node.getLine() > 0 || depth == 0 ? node.getLine() : lines[depth - 1];
+        starts[depth++] = System.nanoTime();
+    }
+
+    /**
+     * Stops timing the node started last
+     * @param node the node of the checked AST that was evaluated
+     * @param producedNodes the number of nodes it added to the evaluated tree
+     */
+    void end(ASTNode node, int producedNodes) {
+        if (depth == 0) {
+            throw new IllegalStateException("end zonder begin voor " + node.getNodeLabel());
+        }
+        depth--;
+        long total = System.nanoTime() - starts[depth];
+        if (depth > 0) {
+            nestedNanos[depth - 1] += total;
+        }
+
+        long self = total - nestedNanos[depth];
+        Entry entry = entries.computeIfAbsent(node, Entry::new);
+        entry.count++;
+        entry.totalNanos += total;
+        entry.selfNanos += self;
+        entry.producedNodes += producedNodes;
+        if (lines[depth] > 0) {
+            selfNanosByLine.merge(lines[depth], self, Long::sum);
+        }
+    }
+
+    public Entry get(ASTNode node) {
+        return entries.get(node);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the sum of the self times, which is the time spent in all profiled nodes
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.selfNanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return all entries, the most expensive first
+     */
+    public List<Entry> getEntries() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparingLong(Entry::getSelfNanos).reversed());
+        return sorted;
+    }
+
+    /**
+     * @return the self time of all nodes per source line, nodes that are not on a line are left out
+     */
+    public Map<Integer, Long> getSelfNanosByLine() {
+        return new TreeMap<>(selfNanosByLine);
+    }
+
+    public void clear() {
+        entries.clear();
+        selfNanosByLine.clear();
+        depth = 0;
+    }
+}
@@ -8,23 +8,115 @@ import nl.han.ica.icss.ast.operations.*;
 import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.events.ForLoopEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class Evaluator implements Transform {
 
-    private LinkedList<HashMap<String, Literal>> variableScopes;
+    public static final int DEFAULT_CACHE_SIZE = 4096;
 
+    //Number of rulesets or loop iterations a single fork-join task evaluates sequentially
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private LinkedList<Map<String, Literal>> variableScopes;
+    private final ForkJoinPool pool;
+
+    //Bumped whenever a variable binding changes, evaluation results are only reused within one version
+    private long environmentVersion = 0;
+    private final EvaluationCache cache;
+    private int spillThreshold = 0;
+    private EvaluationProfile profile;
+    //Off while a copy of an expression is evaluated, see evaluateCopy
+    private boolean profileExpressions = true;
+
+    public Evaluator() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public Evaluator(int cacheSize) {
+        this(cacheSize, null);
+    }
+
+    /**
+     * Creates an evaluator that evaluates top-level rulesets and loop iterations in parallel
+     * @param cacheSize size of the memo table of every worker
+     * @param pool the pool to use, or null to evaluate sequentially
+     */
+    public Evaluator(int cacheSize, ForkJoinPool pool) {
+        this.cache = new EvaluationCache(cacheSize);
+        this.pool = pool;
+    }
+
+    public EvaluationCache getCache() {
+        return cache;
+    }
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * For loops that produce at least this many rules put them in a {@link SpilledRules} block
+     * outside the heap instead of in the stylesheet. Spilled loops are expanded sequentially.
+     * @param spillThreshold number of rules, 0 to never spill
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException("Drempel mag niet negatief zijn: " + spillThreshold);
+        }
+        this.spillThreshold = spillThreshold;
+    }
+
+    public EvaluationProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Records the time spent on every rule, declaration, assignment, if clause, for loop,
+     * operation and variable reference of the checked AST in the profile. Profiling is only possible when evaluating sequentially.
+     * @param profile the profile to add to, or null to stop profiling
+     */
+    public void setProfile(EvaluationProfile profile) {
+        if (profile != null && pool != null) {
+            throw new IllegalStateException("Profileren kan alleen als er sequentieel wordt geëvalueerd");
+        }
+        this.profile = profile;
+    }
+
+    /**
+     * Replaces the root of the AST by its evaluated version, see {@link #evaluate(AST)}
+     */
     @Override
     public void apply(AST ast) {
+        ast.setRoot(evaluate(ast).root);
+    }
+
+    /**
+     * Evaluates the stylesheet without changing it. Nodes that do not change, like rules
+     * with only literals, are shared between the given and the returned tree.
+     * @param ast a checked AST
+     * @return a new AST with the evaluated stylesheet
+     */
+    public AST evaluate(AST ast) {
         variableScopes = new LinkedList<>();
-        applyStylesheet(ast.root);
+        environmentVersion++;
+        if (pool == null) {
+            return new AST(applyStylesheet(ast.root));
+        } else {
+            return new AST(applyStylesheetParallel(ast.root));
+        }
     }
 
-    private void applyStylesheet(Stylesheet stylesheet) {
+    private Stylesheet applyStylesheet(Stylesheet stylesheet) {
         pushScope();
 
         LinkedList<ASTNode> evaluatedChildren = new LinkedList<>();
@@ -33,38 +125,196 @@ public class Evaluator implements Transform {
             if (child instanceof VariableAssignment) {
                 applyVariableAssignment((VariableAssignment) child);
             } else if (child instanceof Stylerule) {
-                applyStylerule((Stylerule) child);
-                evaluatedChildren.add(child);
+                evaluatedChildren.add(applyStylerule((Stylerule) child));
             } else if (child instanceof ForLoop) {
                 applyForLoop((ForLoop) child, evaluatedChildren);
             }
         }
 
-        stylesheet.body = new ArrayList<>(evaluatedChildren);
         popScope();
+        return new Stylesheet(new ArrayList<>(evaluatedChildren));
+    }
+
+    /*
+     Global assignments are evaluated in source order first, every ruleset gets an immutable
+     snapshot of the globals before it. The results are put back in source order,
+     so the output is the same as that of applyStylesheet.
+     */
+    private Stylesheet applyStylesheetParallel(Stylesheet stylesheet) {
+        pushScope();
+
+        List<ASTNode> rulesets = new ArrayList<>();
+        List<Map<String, Literal>> globals = new ArrayList<>();
+        Map<String, Literal> snapshot = null;
+
+        for (ASTNode child : stylesheet.getChildren()) {
+            if (child instanceof VariableAssignment) {
+                applyVariableAssignment((VariableAssignment) child);
+                snapshot = null;
+            } else if (child instanceof Stylerule || child instanceof ForLoop) {
+                if (snapshot == null) {
+                    snapshot = Map.copyOf(variableScopes.peek());
+                }
+                rulesets.add(child);
+                globals.add(snapshot);
+            }
+        }
+
+        List<List<ASTNode>> results = new ArrayList<>(rulesets.size());
+        for (int i = 0; i < rulesets.size(); i++) {
+            results.add(null);
+        }
+        invoke(new RulesetTask(this, rulesets, globals, results, 0, rulesets.size()));
+
+        ArrayList<ASTNode> evaluatedChildren = new ArrayList<>();
+        for (List<ASTNode> result : results) {
+            evaluatedChildren.addAll(result);
+        }
+        popScope();
+        return new Stylesheet(evaluatedChildren);
+    }
+
+    private List<ASTNode> applyRuleset(ASTNode ruleset, Map<String, Literal> globals) {
+        variableScopes = new LinkedList<>();
+        variableScopes.push(globals);
+        environmentVersion++;
+
+        List<ASTNode> evaluated = new ArrayList<>();
+        if (ruleset instanceof Stylerule) {
+            evaluated.add(applyStylerule((Stylerule) ruleset));
+        } else if (ruleset instanceof ForLoop) {
+            applyForLoop((ForLoop) ruleset, evaluated);
+        }
+        return evaluated;
+    }
+
+    //A worker shares the pool of its parent but has its own scopes and memo table
+    private Evaluator createWorker() {
+        Evaluator worker = new Evaluator(cache.getCapacity(), pool);
+        worker.spillThreshold = spillThreshold;
+        return worker;
+    }
+
+    //Inside a task of our own pool the task is forked from there, from any other thread or pool it is handed to ours
+    private void invoke(ForkJoinTask<?> task) {
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static class RulesetTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Evaluator parent;
+        private final List<ASTNode> rulesets;
+        private final List<Map<String, Literal>> globals;
+        private final List<List<ASTNode>> results;
+        private final int start;
+        private final int end;
+
+        RulesetTask(Evaluator parent, List<ASTNode> rulesets, List<Map<String, Literal>> globals,
+                    List<List<ASTNode>> results, int start, int end) {
+            this.parent = parent;
+            this.rulesets = rulesets;
+            this.globals = globals;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                Evaluator worker = parent.createWorker();
+                for (int i = start; i < end; i++) {
+                    results.set(i, worker.applyRuleset(rulesets.get(i), globals.get(i)));
+                }
+                parent.cache.addStatistics(worker.cache);
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RulesetTask(parent, rulesets, globals, results, start, middle),
+                        new RulesetTask(parent, rulesets, globals, results, middle, end));
+            }
+        }
     }
 
     private void applyVariableAssignment(VariableAssignment assignment) {
+        if (profile != null) {
+            profile.begin(assignment);
+            evaluateVariableAssignment(assignment);
+            profile.end(assignment, 0);
+        } else {
+            evaluateVariableAssignment(assignment);
+        }
+    }
+
+    private void evaluateVariableAssignment(VariableAssignment assignment) {
         Expression evaluatedExpr = evaluateExpression(assignment.expression);
         if (!(evaluatedExpr instanceof Literal)) {
             return;
         }
 
-        assignment.expression = evaluatedExpr;
         variableScopes.peek().put(assignment.name.name, (Literal) evaluatedExpr);
+        environmentVersion++;
+    }
+
+    /*
+     Returns the rule itself when evaluating changes nothing, otherwise a new rule
+     that shares the selectors and the unchanged declarations.
+     */
+    private Stylerule applyStylerule(Stylerule stylerule) {
+        if (profile == null) {
+            return evaluateStylerule(stylerule);
+        }
+        profile.begin(stylerule);
+        Stylerule evaluated = evaluateStylerule(stylerule);
+        profile.end(stylerule, 1 + evaluated.body.size());
+        return evaluated;
     }
 
-    private void applyStylerule(Stylerule stylerule) {
+    private Stylerule evaluateStylerule(Stylerule stylerule) {
         pushScope();
 
-        LinkedList<ASTNode> evaluatedBody = new LinkedList<>();
+        ArrayList<ASTNode> evaluatedBody = new ArrayList<>();
         applyBody(stylerule.body, evaluatedBody);
 
-        stylerule.body = new ArrayList<>(evaluatedBody);
         popScope();
+        if (sameNodes(evaluatedBody, stylerule.body)) {
+            return stylerule;
+        }
+        Stylerule evaluated = new Stylerule();
+        evaluated.setLine(stylerule.getLine());
+        evaluated.selectors = stylerule.selectors;
+        evaluated.body = evaluatedBody;
+        return evaluated;
+    }
+
+    private static boolean sameNodes(List<ASTNode> a, List<ASTNode> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void applyIfClause(IfClause ifClause, List<ASTNode> parentBody) {
+        if (profile != null) {
+            int sizeBefore = parentBody.size();
+            profile.begin(ifClause);
+            evaluateIfClause(ifClause, parentBody);
+            profile.end(ifClause, parentBody.size() - sizeBefore);
+        } else {
+            evaluateIfClause(ifClause, parentBody);
+        }
+    }
+
+    private void evaluateIfClause(IfClause ifClause, List<ASTNode> parentBody) {
         Expression conditionExpr = evaluateExpression(ifClause.conditionalExpression);
 
         boolean conditionTrue = (conditionExpr instanceof BoolLiteral)
@@ -94,13 +344,11 @@ public class Evaluator implements Transform {
 
         for (ASTNode child : body) {
             if (child instanceof Declaration) {
-                applyDeclaration((Declaration) child);
-                addOrReplaceDeclaration((Declaration) child, parentBody);
+                addOrReplaceDeclaration(applyDeclaration((Declaration) child), parentBody);
             } else if (child instanceof IfClause) {
                 applyIfClause((IfClause) child, parentBody);
             } else if (child instanceof Stylerule) {
-                applyStylerule((Stylerule) child);
-                parentBody.add(child);
+                parentBody.add(applyStylerule((Stylerule) child));
             }
         }
     }
@@ -119,11 +367,26 @@ public class Evaluator implements Transform {
         parentBody.add(declaration);
     }
 
-    private void applyDeclaration(Declaration declaration) {
-        Expression evaluatedExpr = evaluateExpression(declaration.expression);
-        if (evaluatedExpr instanceof Literal) {
-            declaration.expression = evaluatedExpr;
+    private Declaration applyDeclaration(Declaration declaration) {
+        if (profile == null) {
+            return evaluateDeclaration(declaration);
         }
+        profile.begin(declaration);
+        Declaration evaluated = evaluateDeclaration(declaration);
+        profile.end(declaration, 1);
+        return evaluated;
+    }
+
+    private Declaration evaluateDeclaration(Declaration declaration) {
+        Expression evaluatedExpr = evaluateExpression(declaration.expression);
+        if (!(evaluatedExpr instanceof Literal) || evaluatedExpr == declaration.expression) {
+            return declaration;
+        }
+        Declaration evaluated = new Declaration();
+        evaluated.setLine(declaration.getLine());
+        evaluated.property = declaration.property;
+        evaluated.expression = evaluatedExpr;
+        return evaluated;
     }
 
     private Expression evaluateExpression(Expression expression) {
@@ -131,32 +394,79 @@ public class Evaluator implements Transform {
             return expression;
         }
 
+        if (!(expression instanceof VariableReference) && !(expression instanceof Operation)) {
+            return expression;
+        }
+
+        if (profile == null || !profileExpressions) {
+            return evaluateReferenceOrOperation(expression);
+        }
+        profile.begin(expression);
+        Expression result = evaluateReferenceOrOperation(expression);
+        profile.end(expression, 0);
+        return result;
+    }
+
+    /*
+     A loop evaluates a copy of its expressions for every iteration. The copies are not in the
+     checked AST, so their time is added to the original expression instead.
+     */
+    private Expression evaluateCopy(Expression original, Expression copy) {
+        if (profile == null || !(original instanceof VariableReference || original instanceof Operation)) {
+            return evaluateExpression(copy);
+        }
+        profile.begin(original);
+        profileExpressions = false;
+        Expression result = evaluateExpression(copy);
+        profileExpressions = true;
+        profile.end(original, 0);
+        return result;
+    }
+
+    private Expression evaluateReferenceOrOperation(Expression expression) {
+        Literal cached = cache.get(expression, environmentVersion);
+        if (cached != null) {
+            return cached;
+        }
+
+        Expression result;
         if (expression instanceof VariableReference) {
             Literal resolvedValue = resolveVariable((VariableReference) expression);
-            return resolvedValue != null ? resolvedValue : expression;
+            result = resolvedValue != null ? resolvedValue : expression;
+        } else {
+            result = evaluateOperation((Operation) expression);
         }
 
-        if (expression instanceof Operation) {
-            return evaluateOperation((Operation) expression);
+        if (result instanceof Literal) {
+            cache.put(expression, environmentVersion, (Literal) result);
         }
-
-        return expression;
+        return result;
     }
 
     private Expression evaluateOperation(Operation operation) {
-        operation.lhs = evaluateExpression(operation.lhs);
-        operation.rhs = evaluateExpression(operation.rhs);
+        Expression lhs = evaluateExpression(operation.lhs);
+        Expression rhs = evaluateExpression(operation.rhs);
 
-        if (!(operation.lhs instanceof Literal) || !(operation.rhs instanceof Literal)) {
-            return operation;
+        if (!(lhs instanceof Literal) || !(rhs instanceof Literal)) {
+            if (lhs == operation.lhs && rhs == operation.rhs) {
+                return operation;
+            }
+            //Keep what could be evaluated in a copy, the operation itself may be shared
+            Operation partial = createOperationInstance(operation);
+            if (partial == null) {
+                return operation;
+            }
+            partial.lhs = lhs;
+            partial.rhs = rhs;
+            return partial;
         }
 
         if (operation instanceof AddOperation) {
-            return evaluateAddOperation((Literal) operation.lhs, (Literal) operation.rhs, operation);
+            return evaluateAddOperation((Literal) lhs, (Literal) rhs, operation);
         } else if (operation instanceof SubtractOperation) {
-            return evaluateSubtractOperation((Literal) operation.lhs, (Literal) operation.rhs, operation);
+            return evaluateSubtractOperation((Literal) lhs, (Literal) rhs, operation);
         } else if (operation instanceof MultiplyOperation) {
-            return evaluateMultiplyOperation((Literal) operation.lhs, (Literal) operation.rhs, operation);
+            return evaluateMultiplyOperation((Literal) lhs, (Literal) rhs, operation);
         }
 
         return operation;
@@ -233,7 +543,7 @@ public class Evaluator implements Transform {
     }
 
     private Literal resolveVariable(VariableReference reference) {
-        for (HashMap<String, Literal> scope : variableScopes) {
+        for (Map<String, Literal> scope : variableScopes) {
             if (scope.containsKey(reference.name)) {
                 return scope.get(reference.name);
             }
@@ -242,30 +552,155 @@ public class Evaluator implements Transform {
     }
 
     private void applyForLoop(ForLoop forLoop, List<ASTNode> parentBody) {
+        if (profile != null) {
+            profile.begin(forLoop);
+            int rulesProduced = evaluateForLoop(forLoop, parentBody);
+            profile.end(forLoop, rulesProduced);
+        } else {
+            evaluateForLoop(forLoop, parentBody);
+        }
+    }
+
+    //Returns the number of rules the loop produced, spilled or not
+    private int evaluateForLoop(ForLoop forLoop, List<ASTNode> parentBody) {
         Expression startExpr = evaluateExpression(forLoop.rangeStart);
         Expression endExpr = evaluateExpression(forLoop.rangeEnd);
 
         if (!(startExpr instanceof ScalarLiteral) || !(endExpr instanceof ScalarLiteral)) {
-            return;
+            return 0;
         }
 
         int start = ((ScalarLiteral) startExpr).value;
         int end = ((ScalarLiteral) endExpr).value;
 
-        for (int i = start; i <= end; i++) {
-            for (ASTNode bodyNode : forLoop.body) {
-                if (bodyNode instanceof Stylerule) {
-                    Stylerule expandedStylerule = expandStyleruleForIteration(
-                            (Stylerule) bodyNode, i
-                    );
-                    parentBody.add(expandedStylerule);
+        ForLoopEvent event = new ForLoopEvent();
+        event.begin();
+        int sizeBefore = parentBody.size();
+        int rulesProduced;
+        boolean parallel = pool != null && end - start >= PARALLEL_THRESHOLD;
+        boolean spill = spillThreshold > 0 && (long) (end - start + 1) * countStylerules(forLoop) >= spillThreshold;
+
+        if (spill) {
+            SpilledRules spilled = new SpilledRules();
+            for (int i = start; i <= end; i++) {
+                for (ASTNode bodyNode : forLoop.body) {
+                    if (bodyNode instanceof Stylerule) {
+                        spilled.append(expandStyleruleForIteration((Stylerule) bodyNode, i));
+                    }
+                }
+            }
+            parentBody.add(spilled);
+            rulesProduced = spilled.getRuleCount();
+            parallel = false;
+        } else if (parallel) {
+            applyForLoopParallel(forLoop, start, end, parentBody);
+            rulesProduced = parentBody.size() - sizeBefore;
+        } else {
+            for (int i = start; i <= end; i++) {
+                for (ASTNode bodyNode : forLoop.body) {
+                    if (bodyNode instanceof Stylerule) {
+                        Stylerule expandedStylerule = expandStyleruleForIteration(
+                                (Stylerule) bodyNode, i
+                        );
+                        parentBody.add(expandedStylerule);
+                    }
+                }
+            }
+            rulesProduced = parentBody.size() - sizeBefore;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.variable = forLoop.loopVariable != null ? forLoop.loopVariable.name : null;
+            event.rangeStart = start;
+            event.rangeEnd = end;
+            event.rulesProduced = rulesProduced;
+            event.parallel = parallel;
+            event.commit();
+        }
+        return rulesProduced;
+    }
+
+    private static int countStylerules(ForLoop forLoop) {
+        int count = 0;
+        for (ASTNode bodyNode : forLoop.body) {
+            if (bodyNode instanceof Stylerule) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     Every iteration is independent, the expanded rules are written to a fixed slot
+     so they end up in the same order as with the sequential loop.
+     */
+    private void applyForLoopParallel(ForLoop forLoop, int start, int end, List<ASTNode> parentBody) {
+        List<Stylerule> rules = new ArrayList<>();
+        for (ASTNode bodyNode : forLoop.body) {
+            if (bodyNode instanceof Stylerule) {
+                rules.add((Stylerule) bodyNode);
+            }
+        }
+
+        Stylerule[] expanded = new Stylerule[(end - start + 1) * rules.size()];
+        invoke(new IterationTask(this, rules, expanded, start, start, end + 1));
+        parentBody.addAll(Arrays.asList(expanded));
+    }
+
+    private static class IterationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Evaluator parent;
+        private final List<Stylerule> rules;
+        private final Stylerule[] expanded;
+        private final int rangeStart;
+        private final int from;
+        private final int to;
+
+        IterationTask(Evaluator parent, List<Stylerule> rules, Stylerule[] expanded, int rangeStart, int from, int to) {
+            this.parent = parent;
+            this.rules = rules;
+            this.expanded = expanded;
+            this.rangeStart = rangeStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                //The scopes are only read while expanding, so the worker can share them
+                Evaluator worker = parent.createWorker();
+                worker.variableScopes = parent.variableScopes;
+                int slot = (from - rangeStart) * rules.size();
+                for (int i = from; i < to; i++) {
+                    for (Stylerule rule : rules) {
+                        expanded[slot++] = worker.expandStyleruleForIteration(rule, i);
+                    }
                 }
+                parent.cache.addStatistics(worker.cache);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IterationTask(parent, rules, expanded, rangeStart, from, middle),
+                        new IterationTask(parent, rules, expanded, rangeStart, middle, to));
             }
         }
     }
 
     private Stylerule expandStyleruleForIteration(Stylerule originalStylerule, int iteration) {
+        if (profile == null) {
+            return expandStylerule(originalStylerule, iteration);
+        }
+        profile.begin(originalStylerule);
+        Stylerule expanded = expandStylerule(originalStylerule, iteration);
+        profile.end(originalStylerule, 1 + expanded.body.size());
+        return expanded;
+    }
+
+    private Stylerule expandStylerule(Stylerule originalStylerule, int iteration) {
         Stylerule expandedStylerule = new Stylerule();
+        expandedStylerule.setLine(originalStylerule.getLine());
         expandedStylerule.selectors = new ArrayList<>();
         expandedStylerule.body = new ArrayList<>();
 
@@ -277,10 +712,11 @@ public class Evaluator implements Transform {
             if (node instanceof Declaration) {
                 Declaration originalDecl = (Declaration) node;
                 Declaration expandedDecl = new Declaration();
+                expandedDecl.setLine(originalDecl.getLine());
                 expandedDecl.property = originalDecl.property;
 
                 Expression replacedExpr = replaceLoopIdentifier(originalDecl.expression, iteration);
-                expandedDecl.expression = evaluateExpression(replacedExpr);
+                expandedDecl.expression = evaluateCopy(originalDecl.expression, replacedExpr);
 
                 expandedStylerule.body.add(expandedDecl);
             }
@@ -355,7 +791,9 @@ public class Evaluator implements Transform {
     }
 
     private void popScope() {
-        variableScopes.pop();
+        if (!variableScopes.pop().isEmpty()) {
+            environmentVersion++;
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/*
+ * Optimisation pass that runs after the Evaluator. Rules with exactly the same declarations
+ * are merged into the first of them, which gets the selectors of all of them.
+ * A rule is only moved forward when no rule in between declares one of its properties,
+ * otherwise the cascade could pick a different value.
+ * The rules of the given tree are not changed, a rule that gets extra selectors is copied first.
+ */
+public class RuleMerger implements Transform {
+
+    private int mergedRules;
+
+    @Override
+    public void apply(AST ast) {
+        mergedRules = 0;
+
+        ArrayList<ASTNode> merged = new ArrayList<>();
+        HashMap<List<ASTNode>, Integer> firstByBody = new HashMap<>();
+        HashMap<String, Integer> lastDeclared = new HashMap<>();
+        HashSet<Integer> copied = new HashSet<>();
+        //Nothing may be moved before a node of which we do not know what it declares
+        int barrier = -1;
+
+        for (ASTNode child : ast.root.getChildren()) {
+            if (!(child instanceof Stylerule) || !isEvaluated((Stylerule) child)) {
+                merged.add(child);
+                barrier = merged.size() - 1;
+                continue;
+            }
+
+            Stylerule stylerule = (Stylerule) child;
+            Integer target = firstByBody.get(stylerule.body);
+            if (target != null && target > barrier && canMoveTo(stylerule, target, lastDeclared)) {
+                if (copied.add(target)) {
+                    merged.set(target, copy((Stylerule) merged.get(target)));
+                }
+                addSelectors((Stylerule) merged.get(target), stylerule);
+                mergedRules++;
+            } else {
+                merged.add(stylerule);
+                int index = merged.size() - 1;
+                firstByBody.put(stylerule.body, index);
+                for (ASTNode node : stylerule.body) {
+                    lastDeclared.put(((Declaration) node).property.name, index);
+                }
+            }
+        }
+
+        ast.setRoot(new Stylesheet(merged));
+    }
+
+    /**
+     * @return the number of rules that were merged into another rule by the last apply
+     */
+    public int getMergedRules() {
+        return mergedRules;
+    }
+
+    private boolean isEvaluated(Stylerule stylerule) {
+        for (ASTNode node : stylerule.body) {
+            if (!(node instanceof Declaration) || !(((Declaration) node).expression instanceof Literal)) {
+                return false;
+            }
+        }
+        return !stylerule.body.isEmpty();
+    }
+
+    private boolean canMoveTo(Stylerule stylerule, int target, HashMap<String, Integer> lastDeclared) {
+        for (ASTNode node : stylerule.body) {
+            Integer last = lastDeclared.get(((Declaration) node).property.name);
+            if (last != null && last > target) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Stylerule copy(Stylerule stylerule) {
+        Stylerule copy = new Stylerule();
+        copy.setLine(stylerule.getLine());
+        copy.selectors = new ArrayList<>(stylerule.selectors);
+        copy.body = stylerule.body;
+        return copy;
+    }
+
+    private void addSelectors(Stylerule target, Stylerule source) {
+        for (Selector selector : source.selectors) {
+            if (!target.selectors.contains(selector)) {
+                target.selectors.add(selector);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package nl.han.ica.icss.watch;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Long running compiler for a directory of .icss files. The last source and output of every
+ * file are kept, so only a file whose content changed is compiled again, from scratch, and its .css
+ * is only rewritten when the CSS changed. Editors often save a file in several steps, events that
+ * arrive shortly after each other are handled as one change. A file that cannot be read or compiled
+ * loses its .css, so no stale CSS is served, and the other files are still watched.
+ * What happens to every file is reported to a {@link WatchListener}.
+ */
+public class StylesheetWatcher {
+
+    private static final String SOURCE_EXTENSION = ".icss";
+    private static final String OUTPUT_EXTENSION = ".css";
+    //Time to wait for more events before compiling
+    private static final long SETTLE_MILLIS = 20;
+
+    private final Path directory;
+    private final WatchListener listener;
+    //Files are compiled one at a time, so they can share a pipeline
+    private final Pipeline pipeline = new Pipeline();
+    private final HashMap<Path, String> sources = new HashMap<>();
+    private final HashMap<Path, String> outputs = new HashMap<>();
+
+    public StylesheetWatcher(Path directory, WatchListener listener) {
+        this.directory = directory;
+        this.listener = listener;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("Gebruik: StylesheetWatcher <map met .icss bestanden>");
+            System.exit(1);
+        }
+        StylesheetWatcher watcher = new StylesheetWatcher(Paths.get(args[0]), new WatchListener() {
+            @Override
+            public void compiled(Path source, Path output, long nanos) {
+                System.out.printf("%s -> %s (%.1f ms)%n", source.getFileName(), output.getFileName(), nanos / 1e6);
+            }
+
+            @Override
+            public void failed(Path source, List<String> errors) {
+                System.err.println(source.getFileName() + ":");
+                for (String error : errors) {
+                    System.err.println("  " + error);
+                }
+            }
+
+            @Override
+            public void deleted(Path source) {
+                System.out.println(source.getFileName() + " verwijderd");
+            }
+        });
+        watcher.compileAll();
+        watcher.watch();
+        System.err.println("Map " + args[0] + " is niet meer beschikbaar");
+    }
+
+    public void compileAll() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (isSource(file)) {
+                    handleChange(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles one file if its content differs from the last compiled version. With errors the
+     * old .css is removed, the errors are reported to the listener.
+     * @param file the .icss file
+     * @return true when the file was compiled
+     */
+    public boolean compile(Path file) throws IOException {
+        long start = System.nanoTime();
+        String source = Files.readString(file, StandardCharsets.UTF_8);
+        if (source.equals(sources.get(file))) {
+            return false;
+        }
+        sources.put(file, source);
+
+        pipeline.setSourceName(file.toString());
+        pipeline.parseString(source);
+        if (pipeline.isParsed() && pipeline.check()) {
+            pipeline.transform();
+        }
+        if (!pipeline.getErrors().isEmpty()) {
+            removeOutput(file);
+            listener.failed(file, new ArrayList<>(pipeline.getErrors()));
+            return true;
+        }
+        String css = pipeline.generate();
+        //Leave an unchanged output alone, so tools watching the .css are not triggered
+        if (!css.equals(outputs.get(file))) {
+            Files.writeString(outputFor(file), css, StandardCharsets.UTF_8);
+            outputs.put(file, css);
+        }
+        listener.compiled(file, outputFor(file), System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Watches until the thread is interrupted or the directory is gone
+     */
+    public void watch() throws IOException, InterruptedException {
+        watch(() -> { });
+    }
+
+    /**
+     * @param registered called once changes to the directory are seen
+     */
+    void watch(Runnable registered) throws IOException, InterruptedException {
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            registered.run();
+
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                boolean valid = collect(key, changed);
+
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    valid &= collect(key, changed);
+                }
+
+                for (Path file : changed) {
+                    handleChange(file);
+                }
+                if (!valid) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean collect(WatchKey key, Set<Path> changed) throws IOException {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                //Events were lost, so every file may have changed
+                sources.clear();
+                compileAll();
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (isSource(file)) {
+                changed.add(file);
+            }
+        }
+        return key.reset();
+    }
+
+    private void handleChange(Path file) {
+        try {
+            if (Files.exists(file)) {
+                compile(file);
+                return;
+            }
+        } catch (NoSuchFileException e) {
+            //Deleted after the check, handled as a delete below
+        } catch (IOException | RuntimeException e) {
+            //A half written file for example, it is compiled again on the next change even when it is the same
+            sources.remove(file);
+            listener.failed(file, List.of(e.toString()));
+            try {
+                removeOutput(file);
+            } catch (IOException removeFailure) {
+                listener.failed(file, List.of(removeFailure.toString()));
+            }
+            return;
+        }
+
+        sources.remove(file);
+        try {
+            removeOutput(file);
+            listener.deleted(file);
+        } catch (IOException e) {
+            listener.failed(file, List.of(e.toString()));
+        }
+    }
+
+    private void removeOutput(Path file) throws IOException {
+        outputs.remove(file);
+        Files.deleteIfExists(outputFor(file));
+    }
+
+    private static boolean isSource(Path file) {
+        return file.getFileName().toString().endsWith(SOURCE_EXTENSION);
+    }
+
+    private static Path outputFor(Path file) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - SOURCE_EXTENSION.length()) + OUTPUT_EXTENSION);
+    }
+}
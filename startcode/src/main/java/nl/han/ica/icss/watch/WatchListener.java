@@ -0,0 +1,29 @@
+package nl.han.ica.icss.watch;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Receives what the StylesheetWatcher did with every changed file, on the watching thread
+ */
+public interface WatchListener {
+    /**
+     * @param source the .icss file
+     * @param output the .css file, it is only written when the CSS changed
+     * @param nanos time taken to read and compile the file
+     */
+    void compiled(Path source, Path output, long nanos);
+
+    /**
+     * The file could not be read or has errors, its .css is removed
+     * @param source the .icss file
+     * @param errors the errors of the pipeline or the exception that stopped it
+     */
+    void failed(Path source, List<String> errors);
+
+    /**
+     * The file was deleted, so was its .css
+     * @param source the .icss file
+     */
+    void deleted(Path source);
+}
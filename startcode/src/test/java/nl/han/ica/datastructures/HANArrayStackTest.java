@@ -0,0 +1,62 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANArrayStackTest {
+
+    @Test
+    void testPushPopPeek() {
+        HANArrayStack<String> stack = new HANArrayStack<>(1);
+        stack.push("a");
+        stack.push("b");
+        stack.push("c");
+        assertEquals(3, stack.size());
+        assertEquals("c", stack.peek());
+        assertEquals("c", stack.pop());
+        assertEquals("b", stack.pop());
+        assertEquals("a", stack.pop());
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    void testEmptyStackThrows() {
+        HANArrayStack<String> stack = new HANArrayStack<>(0);
+        assertThrows(IllegalStateException.class, stack::pop);
+        assertThrows(IllegalStateException.class, stack::peek);
+        assertThrows(IllegalArgumentException.class, () -> new HANArrayStack<>(-1));
+    }
+
+    @Test
+    void testClearKeepsCapacity() {
+        HANArrayStack<Integer> stack = new HANArrayStack<>(2);
+        for (int i = 0; i < 100; i++) {
+            stack.push(i);
+        }
+        int capacity = stack.getCapacity();
+        assertTrue(capacity >= 100);
+
+        stack.clear();
+        assertTrue(stack.isEmpty());
+        assertEquals(capacity, stack.getCapacity());
+        assertThrows(IllegalStateException.class, stack::pop);
+    }
+
+    @Test
+    void testPushAllAndPopN() {
+        HANArrayStack<String> stack = new HANArrayStack<>(0);
+        stack.push("a");
+        stack.pushAll(List.of("b", "c", "d"));
+        assertEquals("d", stack.peek());
+        assertEquals(4, stack.size());
+
+        assertEquals(List.of("c", "d"), stack.popN(2));
+        assertEquals(List.of(), stack.popN(0));
+        assertThrows(IllegalStateException.class, () -> stack.popN(3));
+        assertEquals(List.of("a", "b"), stack.popN(2));
+        assertTrue(stack.isEmpty());
+    }
+}
@@ -0,0 +1,131 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANConcurrentQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int CONSUMERS = 4;
+    private static final int PER_PRODUCER = 100_000;
+
+    @Test
+    void testBoundedSingleThreaded() {
+        HANConcurrentQueue<String> queue = new HANConcurrentQueue<>(3);
+        assertEquals(4, queue.getCapacity());
+        assertNull(queue.poll());
+        assertThrows(IllegalStateException.class, queue::dequeue);
+        assertThrows(IllegalStateException.class, queue::peek);
+
+        for (String value : List.of("a", "b", "c", "d")) {
+            assertTrue(queue.offer(value));
+        }
+        assertFalse(queue.offer("e"));
+        assertThrows(IllegalStateException.class, () -> queue.enqueue("e"));
+        assertThrows(IllegalArgumentException.class, () -> queue.offer(null));
+        assertEquals(4, queue.getSize());
+
+        assertEquals("a", queue.peek());
+        assertEquals("a", queue.dequeue());
+        assertEquals("b", queue.poll());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testPollWithTimeout() throws InterruptedException {
+        HANConcurrentQueue<String> queue = new HANConcurrentQueue<>(2);
+        long start = System.nanoTime();
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(10);
+                queue.put("late");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertEquals("late", queue.take());
+        producer.join();
+    }
+
+    /*
+     Many producers and consumers on a small queue, so it is full and empty all the time.
+     Every value has to arrive exactly once, and every consumer has to see the values
+     of one producer in the order they were added.
+     */
+    @Test
+    void testEveryValueArrivesOnceAndInOrderPerProducer() throws InterruptedException {
+        HANConcurrentQueue<Long> queue = new HANConcurrentQueue<>(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            long producer = p;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < PER_PRODUCER; i++) {
+                        queue.put(producer << 32 | i);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        int total = PRODUCERS * PER_PRODUCER;
+        AtomicInteger taken = new AtomicInteger();
+        int[] counts = new int[total];
+        for (int c = 0; c < CONSUMERS; c++) {
+            threads.add(new Thread(() -> {
+                int[] last = new int[PRODUCERS];
+                Arrays.fill(last, -1);
+                try {
+                    start.await();
+                    while (taken.get() < total) {
+                        Long value = queue.poll(1, TimeUnit.MILLISECONDS);
+                        if (value == null) {
+                            continue;
+                        }
+                        taken.incrementAndGet();
+                        int producer = (int) (value >>> 32);
+                        int index = (int) (long) value;
+                        assertTrue(index > last[producer], "values of a producer out of order");
+                        last[producer] = index;
+                        synchronized (counts) {
+                            counts[producer * PER_PRODUCER + index]++;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+            assertFalse(thread.isAlive(), "deadlock");
+        }
+
+        assertNull(failure.get());
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANLinkedListTest {
+
+    @Test
+    void testAddAndRemoveFirst() {
+        HANLinkedList<String> list = new HANLinkedList<>();
+        list.addFirst("c");
+        list.addFirst("b");
+        list.addFirst("a");
+        list.addLast("d");
+        assertEquals(4, list.getSize());
+        assertEquals("a", list.getFirst());
+        assertEquals("d", list.get(3));
+
+        list.removeFirst();
+        assertEquals("b", list.getFirst());
+        list.clear();
+        assertEquals(0, list.getSize());
+        assertThrows(IllegalStateException.class, list::getFirst);
+        assertThrows(IllegalStateException.class, list::removeFirst);
+    }
+
+    @Test
+    void testIndexOutOfBounds() {
+        HANLinkedList<String> list = new HANLinkedList<>();
+        list.addFirst("a");
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.delete(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.insert(2, "b"));
+    }
+
+    //Random operations over many chunks, compared with an ArrayList
+    @Test
+    void testSameContentAsArrayList() {
+        HANLinkedList<Integer> list = new HANLinkedList<>();
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(6);
+            if (expected.isEmpty() || operation < 2) {
+                int index = random.nextInt(expected.size() + 1);
+                list.insert(index, i);
+                expected.add(index, i);
+            } else if (operation == 2) {
+                list.addFirst(i);
+                expected.add(0, i);
+            } else if (operation == 3) {
+                list.addLast(i);
+                expected.add(i);
+            } else if (operation == 4) {
+                int index = random.nextInt(expected.size());
+                list.delete(index);
+                expected.remove(index);
+            } else {
+                list.removeFirst();
+                expected.remove(0);
+            }
+            assertEquals(expected.size(), list.getSize());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), list.get(i));
+        }
+    }
+}
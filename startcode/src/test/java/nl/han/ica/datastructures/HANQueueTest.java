@@ -0,0 +1,55 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANQueueTest {
+
+    @Test
+    void testFifoOrder() {
+        HANQueue<String> queue = new HANQueue<>();
+        queue.enqueue("a");
+        queue.enqueue("b");
+        queue.enqueue("c");
+        assertEquals(3, queue.getSize());
+        assertEquals("a", queue.peek());
+        assertEquals("a", queue.dequeue());
+        assertEquals("b", queue.dequeue());
+        assertEquals("c", queue.dequeue());
+        assertTrue(queue.isEmpty());
+        assertThrows(IllegalStateException.class, queue::dequeue);
+        assertThrows(IllegalStateException.class, queue::peek);
+    }
+
+    @Test
+    void testCapacityIsPowerOfTwo() {
+        assertEquals(1, new HANQueue<>(0).getCapacity());
+        assertEquals(8, new HANQueue<>(5).getCapacity());
+        assertEquals(16, new HANQueue<>(16).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new HANQueue<>(-1));
+    }
+
+    @Test
+    void testGrowWhileWrappedAround() {
+        HANQueue<Integer> queue = new HANQueue<>(4);
+        ArrayDeque<Integer> expected = new ArrayDeque<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                queue.enqueue(i);
+                expected.add(i);
+            } else {
+                assertEquals(expected.remove(), queue.dequeue());
+            }
+            assertEquals(expected.size(), queue.getSize());
+        }
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        queue.enqueue(1);
+        assertEquals(1, queue.dequeue());
+    }
+}
@@ -0,0 +1,80 @@
+package nl.han.ica.datastructures.bench;
+
+import nl.han.ica.datastructures.HANConcurrentQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput with two producer and two consumer threads per queue, every call is non-blocking.
+ * The score of a group is the sum of its offers and polls, including the ones that failed
+ * because the queue was full or empty, so also compare the offer and poll scores separately.
+ * Run with bench/jmh.sh ConcurrentQueueBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentQueueBenchmark {
+
+    private static final int CAPACITY = 1024;
+    private static final Integer VALUE = 42;
+
+    private HANConcurrentQueue<Integer> hanQueue;
+    private ArrayBlockingQueue<Integer> arrayBlockingQueue;
+    private ConcurrentLinkedQueue<Integer> concurrentLinkedQueue;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        hanQueue = new HANConcurrentQueue<>(CAPACITY);
+        arrayBlockingQueue = new ArrayBlockingQueue<>(CAPACITY);
+        concurrentLinkedQueue = new ConcurrentLinkedQueue<>();
+    }
+
+    @Benchmark
+    @Group("han")
+    @GroupThreads(2)
+    public boolean hanOffer() {
+        return hanQueue.offer(VALUE);
+    }
+
+    @Benchmark
+    @Group("han")
+    @GroupThreads(2)
+    public Integer hanPoll() {
+        return hanQueue.poll();
+    }
+
+    @Benchmark
+    @Group("arrayBlocking")
+    @GroupThreads(2)
+    public boolean arrayBlockingOffer() {
+        return arrayBlockingQueue.offer(VALUE);
+    }
+
+    @Benchmark
+    @Group("arrayBlocking")
+    @GroupThreads(2)
+    public Integer arrayBlockingPoll() {
+        return arrayBlockingQueue.poll();
+    }
+
+    //Unbounded, so offers never fail and the queue can grow while the consumers fall behind
+    @Benchmark
+    @Group("concurrentLinked")
+    @GroupThreads(2)
+    public boolean concurrentLinkedOffer() {
+        return concurrentLinkedQueue.offer(VALUE);
+    }
+
+    @Benchmark
+    @Group("concurrentLinked")
+    @GroupThreads(2)
+    public Integer concurrentLinkedPoll() {
+        return concurrentLinkedQueue.poll();
+    }
+}
@@ -0,0 +1,54 @@
+package nl.han.ica.datastructures.bench;
+
+import nl.han.ica.datastructures.HANLinkedList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a list at the front and walking it by index.
+ * Run with bench/jmh.sh LinkedListBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkedListBenchmark {
+
+    @Param({"64", "1024"})
+    int size;
+
+    private final Object value = new Object();
+
+    @Benchmark
+    public void hanLinkedList(Blackhole blackhole) {
+        HANLinkedList<Object> list = new HANLinkedList<>();
+        for (int i = 0; i < size; i++) {
+            list.addFirst(value);
+        }
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(list.get(i));
+        }
+        while (!list.isEmpty()) {
+            list.removeFirst();
+        }
+    }
+
+    @Benchmark
+    public void linkedList(Blackhole blackhole) {
+        LinkedList<Object> list = new LinkedList<>();
+        for (int i = 0; i < size; i++) {
+            list.addFirst(value);
+        }
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(list.get(i));
+        }
+        while (!list.isEmpty()) {
+            list.removeFirst();
+        }
+    }
+}
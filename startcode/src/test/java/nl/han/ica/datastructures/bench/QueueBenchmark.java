@@ -0,0 +1,80 @@
+package nl.han.ica.datastructures.bench;
+
+import nl.han.ica.datastructures.HANLinkedList;
+import nl.han.ica.datastructures.HANQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A work queue that stays around a fixed length: every step takes one value from the front
+ * and adds one or two at the back, like a breadth-first walk over the AST.
+ * Run with bench/jmh.sh QueueBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueueBenchmark {
+
+    @Param({"16", "4096"})
+    int length;
+
+    private static final int STEPS = 10_000;
+
+    private final Object value = new Object();
+
+    @Benchmark
+    public void hanQueue(Blackhole blackhole) {
+        HANQueue<Object> queue = new HANQueue<>();
+        for (int i = 0; i < length; i++) {
+            queue.enqueue(value);
+        }
+        for (int i = 0; i < STEPS; i++) {
+            blackhole.consume(queue.dequeue());
+            queue.enqueue(value);
+        }
+    }
+
+    @Benchmark
+    public void hanLinkedList(Blackhole blackhole) {
+        HANLinkedList<Object> list = new HANLinkedList<>();
+        for (int i = 0; i < length; i++) {
+            list.addLast(value);
+        }
+        for (int i = 0; i < STEPS; i++) {
+            blackhole.consume(list.getFirst());
+            list.removeFirst();
+            list.addLast(value);
+        }
+    }
+
+    @Benchmark
+    public void arrayDeque(Blackhole blackhole) {
+        ArrayDeque<Object> queue = new ArrayDeque<>();
+        for (int i = 0; i < length; i++) {
+            queue.add(value);
+        }
+        for (int i = 0; i < STEPS; i++) {
+            blackhole.consume(queue.remove());
+            queue.add(value);
+        }
+    }
+
+    @Benchmark
+    public void linkedList(Blackhole blackhole) {
+        LinkedList<Object> queue = new LinkedList<>();
+        for (int i = 0; i < length; i++) {
+            queue.add(value);
+        }
+        for (int i = 0; i < STEPS; i++) {
+            blackhole.consume(queue.remove());
+            queue.add(value);
+        }
+    }
+}
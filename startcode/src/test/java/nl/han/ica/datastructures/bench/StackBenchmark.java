@@ -0,0 +1,83 @@
+package nl.han.ica.datastructures.bench;
+
+import nl.han.ica.datastructures.HANArrayStack;
+import nl.han.ica.datastructures.HANStack;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push and pop patterns of the parser: a stack that goes a few levels deep and back,
+ * many times per parse. Run with bench/jmh.sh StackBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StackBenchmark {
+
+    @Param({"4", "64"})
+    int depth;
+
+    //Number of times the stack is filled and emptied per invocation
+    private static final int ROUNDS = 1000;
+
+    private final Object value = new Object();
+    private final HANArrayStack<Object> reused = new HANArrayStack<>();
+
+    @Benchmark
+    public void hanStack(Blackhole blackhole) {
+        HANStack<Object> stack = new HANStack<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < depth; i++) {
+                stack.push(value);
+            }
+            for (int i = 0; i < depth; i++) {
+                blackhole.consume(stack.pop());
+            }
+        }
+    }
+
+    @Benchmark
+    public void hanArrayStack(Blackhole blackhole) {
+        HANArrayStack<Object> stack = new HANArrayStack<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < depth; i++) {
+                stack.push(value);
+            }
+            for (int i = 0; i < depth; i++) {
+                blackhole.consume(stack.pop());
+            }
+        }
+    }
+
+    @Benchmark
+    public void hanArrayStackReused(Blackhole blackhole) {
+        reused.clear();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < depth; i++) {
+                reused.push(value);
+            }
+            for (int i = 0; i < depth; i++) {
+                blackhole.consume(reused.pop());
+            }
+        }
+    }
+
+    @Benchmark
+    public void arrayDeque(Blackhole blackhole) {
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < depth; i++) {
+                stack.push(value);
+            }
+            for (int i = 0; i < depth; i++) {
+                blackhole.consume(stack.pop());
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package nl.han.ica.icss;
+
+import jdk.jfr.Recording;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.IfClause;
+import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.SpilledRules;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.loops.ForLoop;
+import nl.han.ica.icss.flat.FlatAST;
+import nl.han.ica.icss.metrics.NodeCounter;
+import nl.han.ica.icss.serialization.ASTReader;
+import nl.han.ica.icss.serialization.ASTWriter;
+import nl.han.ica.icss.transforms.EvaluationProfile;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+	/*
+	 A large stylesheet with globals declared between the rulesets and for loops.
+	 With errors, every tenth rule contains a type error and early rules use a global declared later.
+	 */
+	String largeStylesheet(boolean withErrors) {
+		StringBuilder source = new StringBuilder();
+		source.append("Width := 10px;\n");
+		for (int i = 0; i < 2000; i++) {
+			if (i == 1000) {
+				source.append("Late := #00ff00;\n");
+			}
+			source.append(".rule-").append(i).append(" {\n");
+			source.append("  width: Width + ").append(i).append("px;\n");
+			if (withErrors && i % 10 == 0) {
+				source.append("  color: Width;\n");
+			}
+			if ((withErrors || i > 1000) && i % 7 == 0) {
+				source.append("  background-color: Late;\n");
+			}
+			if (i % 5 == 0) {
+				source.append("  Local := ").append(i).append(";\n");
+				source.append("  if[TRUE] { height: Local * Width; }\n");
+			}
+			source.append("}\n");
+		}
+		source.append("for $i in range(1, 12) {\n  .col-#{$i} { width: Width * $i; }\n}\n");
+		source.append("for $i in range(0, 999) {\n  .row-#{$i} { height: Width + $i * 2px; }\n}\n");
+		return source.toString();
+	}
+
+	Pipeline pipeline(String source, boolean parallel) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setParallel(parallel);
+		pipeline.parseString(source);
+		return pipeline;
+	}
+
+	@Test
+	void testParallelCheckReportsSameErrors() {
+		String source = largeStylesheet(true);
+		Pipeline sequential = pipeline(source, false);
+		Pipeline parallel = pipeline(source, true);
+
+		assertFalse(sequential.check());
+		assertFalse(parallel.check());
+		assertEquals(sequential.getErrors(), parallel.getErrors());
+	}
+
+	@Test
+	void testParallelTransformGeneratesSameOutput() {
+		String source = largeStylesheet(false);
+		Pipeline sequential = pipeline(source, false);
+		Pipeline parallel = pipeline(source, true);
+
+		assertTrue(sequential.check());
+		assertTrue(parallel.check());
+		sequential.transform();
+		parallel.transform();
+		assertEquals(sequential.getAST(), parallel.getAST());
+		assertEquals(sequential.generate(), parallel.generate());
+	}
+
+	@Test
+	void testMinifiedOutput() {
+		Pipeline pipeline = pipeline("p { color: #ffffff; width: 10px; }\n"
+				+ "p { width: 20px; background-color: #123456; }\n"
+				+ "a { color: #aabbcc; }\n"
+				+ "p { width: 1px; }\n", false);
+		pipeline.setMinify(true);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		assertEquals("p{color:#fff;width:20px;background-color:#123456}a{color:#abc}p{width:1px}", pipeline.generate());
+	}
+
+	@Test
+	void testOptimizeMergesRulesWithEqualBodies() {
+		Pipeline pipeline = pipeline("for $i in range(1, 3) {\n"
+				+ "  .col-#{$i} { width: 100px; color: #000000; }\n"
+				+ "}\n"
+				+ "p { width: 50px; }\n"
+				+ "a { width: 100px; color: #000000; }\n"
+				+ "#menu { color: #ff0000; }\n", false);
+		pipeline.setMinify(true);
+		pipeline.setOptimize(true);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		//'a' may not move before 'p', which declares width as well
+		assertEquals(".col-1,.col-2,.col-3{width:100px;color:#000}p{width:50px}a{width:100px;color:#000}#menu{color:#f00}",
+				pipeline.generate());
+	}
+
+	@Test
+	void testTransformKeepsCheckedTree() {
+		String source = largeStylesheet(false)
+				+ "a { width: 10px; }\nh1 { width: 10px; }\n#fixed { color: #ff0000; }\n";
+		for (boolean parallel : new boolean[]{false, true}) {
+			Pipeline pipeline = pipeline(source, parallel);
+			pipeline.setOptimize(true);
+			assertTrue(pipeline.check());
+			AST checked = pipeline.getAST();
+			byte[] before = new ASTWriter().write(checked);
+
+			pipeline.transform();
+			assertSame(checked, pipeline.getCheckedAST());
+			assertNotSame(checked, pipeline.getAST());
+			assertArrayEquals(before, new ASTWriter().write(checked));
+
+			//A rule with only literals is not copied, a rule that gets merged into is
+			List<ASTNode> checkedBody = checked.root.body;
+			List<ASTNode> transformedBody = pipeline.getAST().root.body;
+			assertSame(checkedBody.get(checkedBody.size() - 1), transformedBody.get(transformedBody.size() - 1));
+			assertNotSame(checkedBody.get(checkedBody.size() - 3), transformedBody.get(transformedBody.size() - 2));
+			assertEquals(1, ((Stylerule) checkedBody.get(checkedBody.size() - 3)).selectors.size());
+		}
+	}
+
+	@Test
+	void testSpilledLoopsGenerateSameOutput() {
+		String source = largeStylesheet(false)
+				+ "for $i in range(1, 500) {\n  .row-1 { width: $i * 1px; }\n  p { height: 2px; }\n}\n";
+		for (boolean minify : new boolean[]{false, true}) {
+			Pipeline onHeap = pipeline(source, false);
+			Pipeline spilled = pipeline(source, false);
+			for (Pipeline pipeline : new Pipeline[]{onHeap, spilled}) {
+				pipeline.setMinify(minify);
+				pipeline.setOptimize(true);
+				assertTrue(pipeline.check());
+			}
+			spilled.setSpillThreshold(100);
+			onHeap.transform();
+			spilled.transform();
+
+			long blocks = spilled.getAST().root.body.stream().filter(node -> node instanceof SpilledRules).count();
+			assertEquals(2, blocks);
+			assertEquals(onHeap.generate(), spilled.generate());
+		}
+	}
+
+	@Test
+	void testSpilledRulesAreCountedSerialisedAndFreed() {
+		String source = largeStylesheet(false);
+		Pipeline onHeap = pipeline(source, false);
+		Pipeline spilled = pipeline(source, false);
+		spilled.setSpillThreshold(100);
+		for (Pipeline pipeline : new Pipeline[]{onHeap, spilled}) {
+			assertTrue(pipeline.check());
+			pipeline.transform();
+		}
+		AST expected = onHeap.getAST();
+		AST ast = spilled.getAST();
+		List<SpilledRules> blocks = ast.root.body.stream().filter(node -> node instanceof SpilledRules)
+				.map(node -> (SpilledRules) node).collect(Collectors.toList());
+		assertEquals(1, blocks.size());
+
+		assertEquals(NodeCounter.count(expected), NodeCounter.count(ast));
+		assertEquals(expected, new ASTReader().read(new ASTWriter().write(ast)));
+		assertEquals(expected, FlatAST.of(ast).toAST());
+
+		//The next parse frees the rules of the previous tree
+		spilled.parseString("p { width: 1px; }");
+		assertTrue(blocks.get(0).isClosed());
+		assertThrows(IllegalStateException.class, () -> blocks.get(0).forEach(rule -> { }));
+	}
+
+	@Test
+	void testStreamedOutputIsSameAsGenerated() {
+		String source = largeStylesheet(false) + "p { width: 1px; }\np { width: 2px; color: #aabbcc; }\n";
+		for (int spillThreshold : new int[]{0, 100}) {
+			for (boolean minify : new boolean[]{false, true}) {
+				Pipeline pipeline = pipeline(source, false);
+				pipeline.setMinify(minify);
+				pipeline.setSpillThreshold(spillThreshold);
+				assertTrue(pipeline.check());
+				pipeline.transform();
+
+				StringBuilder streamed = new StringBuilder();
+				List<String> parts = new ArrayList<>();
+				pipeline.generate(part -> {
+					streamed.append(part);
+					parts.add(part);
+				});
+				assertEquals(pipeline.generate(), streamed.toString());
+				assertTrue(parts.size() > 1000);
+			}
+		}
+	}
+
+	@Test
+	void testProfileCountsProducedNodesPerLine() {
+		Pipeline pipeline = pipeline("Width := 10px;\n"
+				+ "p {\n"
+				+ "  width: Width * 2;\n"
+				+ "  if[TRUE] { height: Width; color: #ff0000; }\n"
+				+ "}\n"
+				+ "for $i in range(1, 50) {\n"
+				+ "  .col-#{$i} { width: $i * 1px; }\n"
+				+ "}\n", true);
+		EvaluationProfile profile = new EvaluationProfile();
+		pipeline.setProfile(profile);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		List<ASTNode> body = pipeline.getCheckedAST().root.body;
+		Stylerule rule = (Stylerule) body.get(1);
+		ForLoop loop = (ForLoop) body.get(2);
+		IfClause ifClause = (IfClause) rule.body.get(1);
+		assertEquals(1, body.get(0).getLine());
+		assertEquals(2, rule.getLine());
+		assertEquals(4, ifClause.getLine());
+		assertEquals(6, loop.getLine());
+
+		assertEquals(50, profile.get(loop).getProducedNodes());
+		assertEquals(50, profile.get(loop.body.get(0)).getCount());
+		assertEquals(2, profile.get(ifClause).getProducedNodes());
+		assertEquals(4, profile.get(rule).getProducedNodes());
+		assertTrue(profile.get(loop).getTotalNanos() >= profile.get(loop).getSelfNanos());
+
+		//Operations and variable references are profiled as well, loop copies count for the original
+		Declaration width = (Declaration) rule.body.get(0);
+		Declaration colWidth = (Declaration) ((Stylerule) loop.body.get(0)).body.stream()
+				.filter(node -> node instanceof Declaration).findFirst().get();
+		assertEquals(1, profile.get(width.expression).getCount());
+		assertEquals(1, profile.get(((Operation) width.expression).lhs).getCount());
+		assertEquals(50, profile.get(colWidth.expression).getCount());
+		assertTrue(profile.get(width).getTotalNanos() >= profile.get(width.expression).getTotalNanos());
+		assertEquals(profile.getTotalNanos(),
+				profile.getSelfNanosByLine().values().stream().mapToLong(Long::longValue).sum());
+		assertEquals(Set.of(1, 2, 3, 4, 6, 7), profile.getSelfNanosByLine().keySet());
+	}
+
+	@Test
+	void testFlightRecorderEvents() throws Exception {
+		Path file = Files.createTempFile("icss", ".jfr");
+		List<RecordedEvent> events;
+		try (Recording recording = new Recording()) {
+			for (String name : List.of("Lex", "Parse", "Check", "Evaluate", "Generate", "ForLoop")) {
+				recording.enable("nl.han.ica.icss." + name);
+			}
+			recording.start();
+			Pipeline pipeline = new Pipeline();
+			pipeline.setSourceName("loops.icss");
+			pipeline.parseString("for $i in range(1, 3) {\n  .col-#{$i} { width: 10px * $i; }\n}\n");
+			assertTrue(pipeline.check());
+			pipeline.transform();
+			pipeline.generate();
+			recording.stop();
+			recording.dump(file);
+			events = RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+
+		List<String> names = events.stream()
+				.map(event -> event.getEventType().getName())
+				.collect(Collectors.toList());
+		assertEquals(List.of("nl.han.ica.icss.Lex", "nl.han.ica.icss.Parse", "nl.han.ica.icss.Check",
+				"nl.han.ica.icss.ForLoop", "nl.han.ica.icss.Evaluate", "nl.han.ica.icss.Generate"),
+				events.stream().sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+						.map(event -> event.getEventType().getName())
+						.collect(Collectors.toList()));
+		assertEquals(6, names.size());
+
+		RecordedEvent forLoop = events.get(names.indexOf("nl.han.ica.icss.ForLoop"));
+		assertEquals("$i", forLoop.getString("variable"));
+		assertEquals(3, forLoop.getInt("rulesProduced"));
+		RecordedEvent evaluate = events.get(names.indexOf("nl.han.ica.icss.Evaluate"));
+		assertEquals("loops.icss", evaluate.getString("file"));
+		assertTrue(evaluate.getInt("nodes") > evaluate.getInt("nodesBefore"));
+	}
+}
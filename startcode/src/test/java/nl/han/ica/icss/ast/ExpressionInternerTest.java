@@ -0,0 +1,83 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.loops.LoopIdentifier;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionInternerTest {
+
+	Operation operation(Operation operation, Expression lhs, Expression rhs) {
+		operation.lhs = lhs;
+		operation.rhs = rhs;
+		return operation;
+	}
+
+	Expression expressionOf(Stylerule rule) {
+		return ((Declaration) rule.body.get(0)).expression;
+	}
+
+	@Test
+	void testClosedExpressionsAreShared() {
+		ExpressionInterner interner = new ExpressionInterner();
+		Expression first = interner.intern(operation(new AddOperation(), new PixelLiteral(10), new PixelLiteral(2)));
+		Expression second = interner.intern(operation(new AddOperation(), new PixelLiteral(10), new PixelLiteral(2)));
+
+		assertSame(first, second);
+		assertTrue(first.isShared());
+		//The operation and both of its literals
+		assertEquals(3, interner.size());
+		assertSame(((Operation) first).lhs, interner.intern(new PixelLiteral(10)));
+		assertNotSame(first, interner.intern(operation(new AddOperation(), new PixelLiteral(10), new PixelLiteral(3))));
+	}
+
+	@Test
+	void testExpressionsWithVariablesOrLoopIdentifiersAreNotShared() {
+		ExpressionInterner interner = new ExpressionInterner();
+		Expression variable = operation(new MultiplyOperation(), new VariableReference("Width"), new ScalarLiteral(2));
+		Expression loop = operation(new MultiplyOperation(), new LoopIdentifier("$i"), new ScalarLiteral(2));
+
+		assertSame(variable, interner.intern(variable));
+		assertSame(loop, interner.intern(loop));
+		assertNotSame(variable, interner.intern(operation(new MultiplyOperation(), new VariableReference("Width"), new ScalarLiteral(2))));
+		assertFalse(variable.isShared());
+		assertFalse(loop.isShared());
+		assertEquals(0, interner.size());
+	}
+
+	@Test
+	void testParserSharesClosedExpressionsBetweenRules() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("Width := 10px;\n"
+				+ "p { width: 2px + 3px; height: Width * 2; }\n"
+				+ "a { width: 2px + 3px; height: Width * 2; }\n");
+		List<ASTNode> body = pipeline.getAST().root.body;
+		Stylerule p = (Stylerule) body.get(1);
+		Stylerule a = (Stylerule) body.get(2);
+
+		assertSame(expressionOf(p), expressionOf(a));
+		assertNotSame(((Declaration) p.body.get(1)).expression, ((Declaration) a.body.get(1)).expression);
+	}
+
+	@Test
+	void testErrorOnSharedOperationIsReportedPerOccurrence() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: 2px * 3px; }\na { width: 2px * 3px; }\n");
+		List<ASTNode> body = pipeline.getAST().root.body;
+		assertSame(expressionOf((Stylerule) body.get(0)), expressionOf((Stylerule) body.get(1)));
+
+		assertFalse(pipeline.check());
+		//The operation is one node, but it is reported for both rules it occurs in
+		long operationErrors = pipeline.getAST().getErrors().stream()
+				.filter(error -> error.description.contains("multiply"))
+				.count();
+		assertEquals(2, operationErrors);
+	}
+}
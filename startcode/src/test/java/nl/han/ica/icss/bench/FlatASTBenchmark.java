@@ -0,0 +1,112 @@
+package nl.han.ica.icss.bench;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.flat.FlatAST;
+import nl.han.ica.icss.flat.FlatGenerator;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.serialization.NodeKind;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking and generating a transformed stylesheet as an object tree and as a FlatAST.
+ * Run with bench/jmh.sh FlatASTBenchmark, add -prof gc for the allocation per operation.
+ * The main method prints the retained heap of both forms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlatASTBenchmark {
+
+    @Param({"10000", "100000"})
+    int rules;
+
+    private AST tree;
+    private FlatAST flat;
+
+    @Setup
+    public void setup() {
+        tree = transformed(rules);
+        flat = FlatAST.of(tree);
+    }
+
+    static AST transformed(int rules) {
+        String source = "Width := 10px;\n"
+                + "for $i in range(1, " + rules + ") {\n"
+                + "  .col-#{$i} { width: Width * $i; height: $i * 2px + 1px; color: #ff0000; }\n"
+                + "}\n";
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(source);
+        pipeline.check();
+        pipeline.transform();
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public long sumPixelsTree() {
+        return sumPixels(tree.root);
+    }
+
+    private static long sumPixels(ASTNode node) {
+        long sum = node instanceof PixelLiteral ? ((PixelLiteral) node).value : 0;
+        for (ASTNode child : node.getChildren()) {
+            sum += sumPixels(child);
+        }
+        return sum;
+    }
+
+    //Pre-order numbering makes a depth-first walk a loop over the arrays
+    @Benchmark
+    public long sumPixelsFlat() {
+        long sum = 0;
+        for (int node = 0; node < flat.getSize(); node++) {
+            if (flat.getKind(node) == NodeKind.PIXEL_LITERAL) {
+                sum += flat.getPayload(node);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public String generateTree() {
+        return new Generator().generate(tree);
+    }
+
+    @Benchmark
+    public String generateFlat() {
+        return new FlatGenerator().generate(flat);
+    }
+
+    public static void main(String[] args) {
+        int rules = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        long before = usedAfterGc(memory);
+        AST tree = transformed(rules);
+        long treeBytes = usedAfterGc(memory) - before;
+
+        FlatAST flat = FlatAST.of(tree);
+        tree = null;
+        long flatBytes = usedAfterGc(memory) - before;
+
+        System.out.printf("nodes:       %,d%n", flat.getSize());
+        System.out.printf("object tree: %,d bytes (%d per node)%n", treeBytes, treeBytes / flat.getSize());
+        System.out.printf("flat AST:    %,d bytes (%d per node)%n", flatBytes, flatBytes / flat.getSize());
+    }
+
+    private static long usedAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
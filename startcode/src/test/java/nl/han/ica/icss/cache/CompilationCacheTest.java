@@ -0,0 +1,177 @@
+package nl.han.ica.icss.cache;
+
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationCacheTest {
+
+	static final String SOURCE = "Width := 10px;\np { width: Width + 2px; }\n";
+
+	@TempDir
+	Path directory;
+
+	long entries() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.toString().endsWith(".css")).count();
+		}
+	}
+
+	@Test
+	void testMissCompilesAndHitReturnsSameCss() throws IOException {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+		String first = cache.compile(SOURCE, new Pipeline());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, entries());
+
+		//On a hit the pipeline is not used at all
+		Pipeline unused = new Pipeline();
+		assertEquals(first, cache.compile(SOURCE, unused));
+		assertNull(unused.getAST());
+		assertEquals(1, cache.getHits());
+		assertEquals(SOURCE.length(), cache.getBytesSaved());
+		assertEquals(0.5, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	void testEntriesSurviveANewCache() throws IOException {
+		String css = new CompilationCache(directory, 1024 * 1024).compile(SOURCE, new Pipeline());
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+
+		assertEquals(css, cache.compile(SOURCE, new Pipeline()));
+		assertEquals(1, cache.getHits());
+		assertEquals(css.length(), cache.getSizeInBytes());
+	}
+
+	@Test
+	void testSourcesWithErrorsAreNotCached() throws IOException {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+		Pipeline pipeline = new Pipeline();
+
+		assertNull(cache.compile("p { width: Undefined; }\n", pipeline));
+		assertFalse(pipeline.getErrors().isEmpty());
+		assertNull(cache.compile("p { width: Undefined; }\n", new Pipeline()));
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, entries());
+	}
+
+	@Test
+	void testOptionsArePartOfTheKey() throws IOException {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+		Pipeline minified = new Pipeline();
+		minified.setMinify(true);
+		Pipeline optimized = new Pipeline();
+		optimized.setOptimize(true);
+
+		String css = cache.compile(SOURCE, new Pipeline());
+		String minifiedCss = cache.compile(SOURCE, minified);
+		cache.compile(SOURCE, optimized);
+		assertNotEquals(css, minifiedCss);
+		assertEquals(0, cache.getHits());
+		assertEquals(3, entries());
+		assertNotEquals(CompilationCache.keyOf(SOURCE, "minify=false"), CompilationCache.keyOf(SOURCE, "minify=true"));
+		assertEquals(CompilationCache.keyOf(SOURCE, "minify=true"), CompilationCache.keyOf(SOURCE, "minify=true"));
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsedEntriesBeyondLimit() throws IOException {
+		String css = compileWithoutCache("p { width: 1px; }\n");
+		//Room for two entries of about the same size
+		CompilationCache cache = new CompilationCache(directory, 2L * css.length() + css.length() / 2);
+		cache.compile("p { width: 1px; }\n", new Pipeline());
+		cache.compile("p { width: 2px; }\n", new Pipeline());
+		//Makes the second entry the least recently used one
+		Files.setLastModifiedTime(directory.resolve(CompilationCache.keyOf("p { width: 2px; }\n", "minify=false,optimize=false") + ".css"),
+				FileTime.fromMillis(0));
+		cache.compile("p { width: 3px; }\n", new Pipeline());
+
+		assertEquals(2, entries());
+		assertTrue(cache.getSizeInBytes() <= 2L * css.length() + css.length() / 2);
+		cache.compile("p { width: 1px; }\n", new Pipeline());
+		assertEquals(1, cache.getHits());
+		cache.compile("p { width: 2px; }\n", new Pipeline());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	void testCountersAreExactWithSeveralThreads() throws Exception {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				Pipeline pipeline = new Pipeline();
+				for (int i = 0; i < 50; i++) {
+					try {
+						cache.compile("p { width: " + ((i + offset) % 10) + "px; }\n", pipeline);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(200, cache.getHits() + cache.getMisses());
+		assertEquals(10, entries());
+		long bytes = 0;
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				bytes += Files.size(file);
+			}
+		}
+		assertEquals(bytes, cache.getSizeInBytes());
+	}
+
+	String compileWithoutCache(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		pipeline.check();
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	Path jar(Path file, long time, byte[] classBytes) throws IOException {
+		try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(file))) {
+			for (String name : new String[]{"a/B.class", "a/C.class", "a/notes.txt"}) {
+				JarEntry entry = new JarEntry(name);
+				entry.setTime(time);
+				output.putNextEntry(entry);
+				output.write(name.equals("a/C.class") ? classBytes : new byte[]{1, 2, 3});
+				output.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	@Test
+	void testCompilerHashDependsOnClassesOnly() throws IOException {
+		byte[] classBytes = {4, 5, 6};
+		Path classes = Files.createDirectories(directory.resolve("classes/a"));
+		Files.write(classes.resolve("B.class"), new byte[]{1, 2, 3});
+		Files.write(classes.resolve("C.class"), classBytes);
+		Files.write(classes.resolve("notes.txt"), new byte[]{7});
+
+		//Packaging again gives a different jar file with the same classes
+		String hash = CompilationCache.hashClasses(jar(directory.resolve("first.jar"), 0, classBytes));
+		assertEquals(hash, CompilationCache.hashClasses(jar(directory.resolve("second.jar"), 86_400_000L, classBytes)));
+		assertEquals(hash, CompilationCache.hashClasses(directory.resolve("classes")));
+
+		assertNotEquals(hash, CompilationCache.hashClasses(jar(directory.resolve("changed.jar"), 0, new byte[]{4, 5, 7})));
+	}
+}
@@ -0,0 +1,89 @@
+package nl.han.ica.icss.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileDaemonTest {
+
+	ServerSocket server;
+	CompileClient client;
+
+	@BeforeEach
+	void startDaemon() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		client = new CompileClient(server.getLocalPort());
+		CompileDaemon daemon = new CompileDaemon(server.getLocalPort());
+		Thread thread = new Thread(() -> {
+			try {
+				daemon.serve(server);
+			} catch (IOException e) {
+				//Server socket closed by the test
+			}
+		}, "daemon");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@AfterEach
+	void stopDaemon() throws IOException {
+		server.close();
+	}
+
+	@Test
+	void testRequestsOnOneConnection() throws IOException {
+		try (Socket socket = client.connect();
+			 DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			List<String> errors = new ArrayList<>();
+			String css = client.compile(input, output, "p { width: 10px + 5px; }", 0, errors);
+			assertNotNull(css);
+			assertTrue(css.contains("width: 15px;"));
+			assertTrue(errors.isEmpty());
+
+			css = client.compile(input, output, "p { width: 10px + 5px; }", Protocol.OPTION_MINIFY, errors);
+			assertEquals("p{width:15px}", css.trim());
+
+			//Errors are reported without CSS and the connection stays usable
+			assertNull(client.compile(input, output, "p { width: Unknown; }", 0, errors));
+			assertFalse(errors.isEmpty());
+
+			errors.clear();
+			assertNotNull(client.compile(input, output, "a { color: #ff0000; }", 0, errors));
+			assertTrue(errors.isEmpty());
+		}
+	}
+
+	@Test
+	void testMalformedLengthClosesConnection() throws IOException {
+		for (int length : new int[]{-1, Integer.MAX_VALUE}) {
+			try (Socket socket = client.connect();
+				 DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+				output.writeInt(Protocol.VERSION);
+				output.writeByte(0);
+				output.writeInt(length);
+				output.flush();
+				assertEquals(-1, input.read());
+			}
+		}
+	}
+
+	@Test
+	void testReadStringRejectsMalformedLength() {
+		for (int length : new int[]{-1, Protocol.MAX_STRING_BYTES + 1}) {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+					new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length}));
+			assertThrows(IOException.class, () -> Protocol.readString(input));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package nl.han.ica.icss.flat;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.serialization.NodeKind;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+class FlatASTTest {
+
+	String resource(String name) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		InputStream inputStream = classLoader.getResourceAsStream(name);
+		return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void testRoundTrip() {
+		for (AST exp : new AST[]{Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()}) {
+			assertEquals(exp, FlatAST.of(exp).toAST());
+		}
+	}
+
+	@Test
+	void testPreOrderLayout() {
+		FlatAST sut = FlatAST.of(Fixtures.uncheckedLevel0());
+		assertEquals(NodeKind.STYLESHEET, sut.getKind(0));
+		assertEquals(1, sut.getFirstChild(0));
+		assertEquals(NodeKind.STYLERULE, sut.getKind(1));
+		assertEquals(NodeKind.TAG_SELECTOR, sut.getKind(2));
+		assertEquals("p", sut.getString(2));
+		assertEquals(FlatAST.NONE, sut.getFirstChild(2));
+	}
+
+	@Test
+	void testGeneratorGivesSameOutputAsPipeline() throws IOException {
+		for (String name : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			for (boolean minify : new boolean[]{false, true}) {
+				Pipeline pipeline = new Pipeline();
+				pipeline.setMinify(minify);
+				pipeline.setOptimize(true);
+				pipeline.parseString(resource(name));
+				assertTrue(pipeline.check());
+				pipeline.transform();
+
+				FlatAST transformed = FlatAST.of(pipeline.getAST());
+				assertEquals(pipeline.getAST(), transformed.toAST());
+				FlatGenerator generator = new FlatGenerator();
+				generator.setMinify(minify);
+				assertEquals(pipeline.generate(), generator.generate(transformed), name);
+			}
+		}
+	}
+
+	@Test
+	void testMinifyMergesAdjacentRulesLikeGenerator() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setMinify(true);
+		pipeline.parseString("p { color: #ffffff; width: 10px; }\n"
+				+ "p { width: 20px; background-color: #123456; }\n"
+				+ "a { color: #aabbcc; }\n"
+				+ "p, a { width: 1px; }\n"
+				+ "p, a { height: 1px; }\n");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		FlatGenerator generator = new FlatGenerator();
+		generator.setMinify(true);
+		assertEquals(pipeline.generate(), generator.generate(FlatAST.of(pipeline.getAST())));
+	}
+
+	@Test
+	void testKeepsErrors() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: #ff0000; }\na { color: Missing; }");
+		assertFalse(pipeline.check());
+
+		FlatAST sut = FlatAST.of(pipeline.getAST());
+		assertEquals(2, sut.getErrors().size());
+		assertEquals(pipeline.getAST().getErrors().toString(), sut.toAST().getErrors().toString());
+	}
+
+	@Test
+	void testKeepsLines() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("Width := 10px;\n\np {\n  width: Width;\n}\n");
+		assertTrue(pipeline.check());
+
+		FlatAST sut = FlatAST.of(pipeline.getAST());
+		assertEquals(1, sut.getLine(1));
+		assertEquals(NodeKind.STYLERULE, sut.getKind(4));
+		assertEquals(3, sut.getLine(4));
+		Stylerule rule = (Stylerule) sut.toAST().root.body.get(1);
+		assertEquals(3, rule.getLine());
+		assertEquals(4, rule.body.get(0).getLine());
+	}
+}
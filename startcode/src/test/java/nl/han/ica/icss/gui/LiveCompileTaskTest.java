@@ -0,0 +1,88 @@
+package nl.han.ica.icss.gui;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveCompileTaskTest {
+
+	/**
+	 * Task that sees a newer run after a number of checks, like a keystroke during a compile
+	 */
+	static class SupersededTask extends LiveCompileTask {
+		private int checks;
+
+		SupersededTask(String source, int checks) {
+			super(source, new AtomicLong());
+			this.checks = checks;
+		}
+
+		@Override
+		long getLatestRun() {
+			return checks-- > 0 ? super.getLatestRun() : -1;
+		}
+	}
+
+	static int outputFiles() {
+		String[] files = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("icss-output"));
+		return files == null ? 0 : files.length;
+	}
+
+	@Test
+	void testCompiles() throws IOException {
+		LiveCompileTask task = new LiveCompileTask("p { width: 10px + 5px; }", new AtomicLong());
+		task.call();
+		assertFalse(task.isSuperseded());
+		assertEquals(List.of("Parsing succeeded", "AST is ok!", "Transformation succeeded", "Generating succeeded"),
+				task.getFeedback());
+		assertNotNull(task.getDocument());
+		assertTrue(task.getDocument().getChunk(0).contains("width: 15px;"));
+		assertTrue(task.getLatency() > 0);
+		task.getDocument().close();
+	}
+
+	@Test
+	void testErrorsHaveNoDocument() throws IOException {
+		LiveCompileTask task = new LiveCompileTask("p { width: Unknown; }", new AtomicLong());
+		task.call();
+		assertFalse(task.isSuperseded());
+		assertNull(task.getDocument());
+		assertEquals("Parsing succeeded", task.getFeedback().get(0));
+		assertFalse(task.getPipeline().getErrors().isEmpty());
+		assertTrue(task.getFeedback().containsAll(task.getPipeline().getErrors()));
+	}
+
+	@Test
+	void testNewerRunStopsOlderRun() throws IOException {
+		AtomicLong latestRun = new AtomicLong();
+		LiveCompileTask older = new LiveCompileTask("p { width: 10px; }", latestRun);
+		LiveCompileTask newer = new LiveCompileTask("p { width: 20px; }", latestRun);
+
+		older.call();
+		assertTrue(older.isSuperseded());
+		assertEquals(List.of("Parsing succeeded"), older.getFeedback());
+		assertNull(older.getDocument());
+
+		newer.call();
+		assertFalse(newer.isSuperseded());
+		assertNotNull(newer.getDocument());
+		newer.getDocument().close();
+	}
+
+	@Test
+	void testSupersededWhileGeneratingClosesDocument() throws IOException {
+		int before = outputFiles();
+		//Read after parse, check and transform, then superseded while generating
+		LiveCompileTask task = new SupersededTask("p { width: 10px; }\na { width: 20px; }", 3);
+		task.call();
+		assertTrue(task.isSuperseded());
+		assertEquals(List.of("Parsing succeeded", "AST is ok!", "Transformation succeeded"), task.getFeedback());
+		assertNull(task.getDocument());
+		assertEquals(before, outputFiles());
+	}
+}
@@ -0,0 +1,31 @@
+package nl.han.ica.icss.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageMetricsTest {
+
+	@Test
+	void testGetters() {
+		StageMetrics metrics = new StageMetrics(Stage.TRANSFORM, "a.icss", 2_500_000, 1024, 10, 7, -1, 2);
+		assertEquals(Stage.TRANSFORM, metrics.getStage());
+		assertEquals("a.icss", metrics.getSourceName());
+		assertEquals(2_500_000, metrics.getWallNanos());
+		assertEquals(1024, metrics.getAllocatedBytes());
+		assertEquals(10, metrics.getNodesBefore());
+		assertEquals(7, metrics.getNodesAfter());
+		assertEquals(-1, metrics.getTokenCount());
+		assertEquals(2, metrics.getErrorCount());
+	}
+
+	@Test
+	void testToString() {
+		StageMetrics metrics = new StageMetrics(Stage.TRANSFORM, "a.icss", 2_500_000, 1024, 10, 7, -1, 2);
+		String text = metrics.toString();
+		assertTrue(text.startsWith("a.icss TRANSFORM: "));
+		assertTrue(text.contains("1024 bytes"));
+		assertTrue(text.contains("nodes 10 -> 7"));
+		assertTrue(text.contains("errors 2"));
+	}
+}
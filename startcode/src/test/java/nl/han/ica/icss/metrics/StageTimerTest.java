@@ -0,0 +1,59 @@
+package nl.han.ica.icss.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageTimerTest {
+
+	static volatile Object sink;
+
+	@Test
+	void testMeasuresWallTime() throws InterruptedException {
+		StageTimer timer = StageTimer.start();
+		Thread.sleep(20);
+		timer.stop();
+		StageMetrics metrics = timer.getMetrics(Stage.PARSE, "test", -1, 3, 10, 0);
+		assertTrue(metrics.getWallNanos() >= 20_000_000L);
+		assertEquals(Stage.PARSE, metrics.getStage());
+		assertEquals("test", metrics.getSourceName());
+		assertEquals(3, metrics.getNodesAfter());
+		assertEquals(10, metrics.getTokenCount());
+	}
+
+	@Test
+	void testOnlyFirstStopCounts() throws InterruptedException {
+		StageTimer timer = StageTimer.start();
+		timer.stop();
+		long wallNanos = timer.getMetrics(Stage.CHECK, "test", -1, -1, -1, 0).getWallNanos();
+		Thread.sleep(20);
+		timer.stop();
+		assertEquals(wallNanos, timer.getMetrics(Stage.CHECK, "test", -1, -1, -1, 0).getWallNanos());
+	}
+
+	@Test
+	void testMetricsNeedStop() {
+		StageTimer timer = StageTimer.start();
+		assertFalse(timer.isStopped());
+		assertThrows(IllegalStateException.class, () -> timer.getMetrics(Stage.CHECK, "test", -1, -1, -1, 0));
+	}
+
+	@Test
+	void testMeasuresAllocationsOfCallingThreadOnly() throws InterruptedException {
+		StageTimer timer = StageTimer.start();
+		sink = new byte[1_000_000];
+		timer.stop();
+		long allocated = timer.getMetrics(Stage.TRANSFORM, "test", -1, -1, -1, 0).getAllocatedBytes();
+		if (allocated < 0) {
+			return; //The JVM cannot measure allocations
+		}
+		assertTrue(allocated >= 1_000_000);
+
+		timer = StageTimer.start();
+		Thread other = new Thread(() -> sink = new byte[10_000_000]);
+		other.start();
+		other.join();
+		timer.stop();
+		assertTrue(timer.getMetrics(Stage.TRANSFORM, "test", -1, -1, -1, 0).getAllocatedBytes() < 10_000_000);
+	}
+}
@@ -0,0 +1,76 @@
+package nl.han.ica.icss.metrics;
+
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SummaryMetricsListenerTest {
+
+	@Test
+	void testAddsUpPerStage() {
+		SummaryMetricsListener summary = new SummaryMetricsListener();
+		summary.stageCompleted(new StageMetrics(Stage.PARSE, "a", 1000, 10, -1, 5, 20, 0));
+		summary.stageCompleted(new StageMetrics(Stage.PARSE, "b", 2000, -1, -1, 3, 12, 1));
+		summary.stageCompleted(new StageMetrics(Stage.GENERATE, "a", 500, 10, -1, 5, -1, 0));
+
+		assertEquals(2, summary.getRuns(Stage.PARSE));
+		assertEquals(3000, summary.getTotalNanos(Stage.PARSE));
+		assertEquals(1, summary.getRuns(Stage.GENERATE));
+		assertEquals(0, summary.getRuns(Stage.CHECK));
+		assertEquals(0, summary.getTotalNanos(Stage.CHECK));
+
+		String[] lines = summary.toString().split("\n");
+		assertEquals(3, lines.length);
+		//Unknown allocations (-1) are left out of the total
+		assertTrue(lines[1].matches("PARSE\\s+2\\s+0\\.00\\s+10\\s+8\\s+1"), lines[1]);
+		assertTrue(lines[2].startsWith("GENERATE"));
+	}
+
+	@Test
+	void testConcurrentStages() throws InterruptedException {
+		SummaryMetricsListener summary = new SummaryMetricsListener();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					summary.stageCompleted(new StageMetrics(Stage.CHECK, "a", 1, 0, -1, 1, -1, 0));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(4000, summary.getRuns(Stage.CHECK));
+		assertEquals(4000, summary.getTotalNanos(Stage.CHECK));
+	}
+
+	@Test
+	void testPipelineReportsEveryStage() {
+		Pipeline pipeline = new Pipeline();
+		SummaryMetricsListener summary = new SummaryMetricsListener();
+		List<StageMetrics> stages = new ArrayList<>();
+		pipeline.addMetricsListener(summary);
+		pipeline.addMetricsListener(stages::add);
+
+		pipeline.parseString("Width := 10px;\np { width: Width + 5px; }");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		pipeline.generate();
+
+		for (Stage stage : Stage.values()) {
+			assertEquals(1, summary.getRuns(stage));
+		}
+		assertEquals(4, stages.size());
+		StageMetrics transform = stages.get(2);
+		assertEquals(Stage.TRANSFORM, transform.getStage());
+		//The variable assignment and the expression are gone after the transform
+		assertTrue(transform.getNodesAfter() < transform.getNodesBefore());
+		assertTrue(stages.get(0).getTokenCount() > 0);
+	}
+}
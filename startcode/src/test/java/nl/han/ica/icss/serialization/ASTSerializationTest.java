@@ -0,0 +1,108 @@
+package nl.han.ica.icss.serialization;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class ASTSerializationTest {
+
+	AST roundTrip(AST ast) {
+		byte[] bytes = new ASTWriter().write(ast);
+		return new ASTReader().read(bytes);
+	}
+
+	//The lines of all nodes in pre-order
+	List<Integer> lines(ASTNode node, List<Integer> lines) {
+		lines.add(node.getLine());
+		for (ASTNode child : node.getChildren()) {
+			lines(child, lines);
+		}
+		return lines;
+	}
+
+	Pipeline checkedPipeline(String resource) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		InputStream inputStream = classLoader.getResourceAsStream(resource);
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+		pipeline.check();
+		return pipeline;
+	}
+
+	@Test
+	void testRoundTripLevel0() {
+		AST exp = Fixtures.uncheckedLevel0();
+		assertEquals(exp, roundTrip(exp));
+	}
+	@Test
+	void testRoundTripLevel1() {
+		AST exp = Fixtures.uncheckedLevel1();
+		assertEquals(exp, roundTrip(exp));
+	}
+	@Test
+	void testRoundTripLevel2() {
+		AST exp = Fixtures.uncheckedLevel2();
+		assertEquals(exp, roundTrip(exp));
+	}
+	@Test
+	void testRoundTripLevel3() {
+		AST exp = Fixtures.uncheckedLevel3();
+		assertEquals(exp, roundTrip(exp));
+	}
+	@Test
+	void testRoundTripTransformedGeneratesSameOutput() throws IOException {
+		Pipeline pipeline = checkedPipeline("level3.icss");
+		pipeline.transform();
+		AST transformed = pipeline.getAST();
+
+		AST sut = roundTrip(transformed);
+		assertEquals(transformed, sut);
+		assertEquals(pipeline.generate(), new Generator().generate(sut));
+	}
+	@Test
+	void testRoundTripKeepsErrors() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: #ff0000; }");
+		assertFalse(pipeline.check());
+
+		AST sut = roundTrip(pipeline.getAST());
+		assertEquals(pipeline.getAST(), sut);
+		assertEquals(pipeline.getAST().getErrors().toString(), sut.getErrors().toString());
+	}
+	@Test
+	void testReadMemoryMapped(@TempDir Path directory) throws IOException {
+		AST exp = Fixtures.uncheckedLevel3();
+		Path file = directory.resolve("level3.icssb");
+		new ASTWriter().write(exp, file);
+
+		assertEquals(exp, new ASTReader().read(file));
+	}
+	@Test
+	void testRoundTripKeepsLines() throws IOException {
+		Pipeline pipeline = checkedPipeline("level3.icss");
+		List<Integer> expected = lines(pipeline.getAST().root, new ArrayList<>());
+		assertTrue(expected.stream().anyMatch(line -> line > 1));
+
+		assertEquals(expected, lines(roundTrip(pipeline.getAST()).root, new ArrayList<>()));
+	}
+	@Test
+	void testRejectsOtherFormatVersion() {
+		byte[] bytes = new ASTWriter().write(Fixtures.uncheckedLevel0());
+		bytes[ASTWriter.MAGIC.length] = 1;
+
+		assertThrows(IllegalArgumentException.class, () -> new ASTReader().read(bytes));
+	}
+}
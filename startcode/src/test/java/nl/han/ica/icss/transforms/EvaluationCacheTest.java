@@ -0,0 +1,84 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.VariableReference;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationCacheTest {
+
+	Expression add(String variable, int pixels) {
+		Operation operation = new AddOperation();
+		operation.lhs = new VariableReference(variable);
+		operation.rhs = new PixelLiteral(pixels);
+		return operation;
+	}
+
+	@Test
+	void testCountsHitsAndMisses() {
+		EvaluationCache cache = new EvaluationCache(8);
+		assertNull(cache.get(add("A", 1), 1));
+		cache.put(add("A", 1), 1, new PixelLiteral(2));
+
+		//Structurally equal expressions are the same key
+		assertEquals(new PixelLiteral(2), cache.get(add("A", 1), 1));
+		assertNull(cache.get(add("A", 2), 1));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsedEntry() {
+		EvaluationCache cache = new EvaluationCache(2);
+		cache.put(add("A", 1), 1, new PixelLiteral(1));
+		cache.put(add("B", 1), 1, new PixelLiteral(2));
+		assertNotNull(cache.get(add("A", 1), 1));
+		cache.put(add("C", 1), 1, new PixelLiteral(3));
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(add("A", 1), 1));
+		assertNull(cache.get(add("B", 1), 1));
+		assertNotNull(cache.get(add("C", 1), 1));
+	}
+
+	@Test
+	void testDoesNotHitForOtherEnvironmentVersion() {
+		EvaluationCache cache = new EvaluationCache(8);
+		cache.put(add("A", 1), 1, new PixelLiteral(2));
+
+		assertNull(cache.get(add("A", 1), 2));
+		assertNotNull(cache.get(add("A", 1), 1));
+	}
+
+	@Test
+	void testZeroCapacityDisablesCache() {
+		EvaluationCache cache = new EvaluationCache(0);
+		cache.put(add("A", 1), 1, new PixelLiteral(2));
+
+		assertNull(cache.get(add("A", 1), 1));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	void testLocalVariableShadowingGlobalIsNotServedFromCache() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("Width := 1px;\n"
+				+ "p { width: Width + 1px; height: Width + 1px; }\n"
+				+ "a { Width := 5px; width: Width + 1px; }\n"
+				+ "h1 { width: Width + 1px; }\n");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		assertTrue(pipeline.generate().replaceAll("\\s", "").endsWith("p{width:2px;height:2px;}a{width:6px;}h1{width:2px;}"));
+		EvaluationCache cache = pipeline.getEvaluationCache();
+		assertTrue(cache.getHits() > 0);
+		assertTrue(cache.getMisses() > 0);
+	}
+}
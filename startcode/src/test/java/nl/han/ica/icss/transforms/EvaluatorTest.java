@@ -0,0 +1,42 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+	AST checked(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.check());
+		return pipeline.getAST();
+	}
+
+	@Test
+	void testParallelEvaluationUsesConfiguredPoolFromOtherPool() throws Exception {
+		StringBuilder source = new StringBuilder("Width := 10px;\n");
+		for (int i = 0; i < 1000; i++) {
+			source.append(".rule-").append(i).append(" { width: Width + ").append(i).append("px; }\n");
+		}
+		AST expected = checked(source.toString());
+		new Evaluator().apply(expected);
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		ForkJoinPool caller = new ForkJoinPool(1);
+		try {
+			AST ast = checked(source.toString());
+			//Like a pipeline that is transformed from a parallel stream
+			caller.submit(() -> new Evaluator(Evaluator.DEFAULT_CACHE_SIZE, pool).apply(ast)).get();
+			assertEquals(expected, ast);
+			assertTrue(pool.getPoolSize() > 0, "The configured pool was not used");
+		} finally {
+			pool.shutdown();
+			caller.shutdown();
+		}
+	}
+}
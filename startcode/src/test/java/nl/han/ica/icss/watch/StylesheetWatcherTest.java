@@ -0,0 +1,148 @@
+package nl.han.ica.icss.watch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StylesheetWatcherTest {
+
+	@TempDir
+	Path directory;
+
+	Thread thread;
+
+	//Written by the watching thread
+	final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+	final WatchListener listener = new WatchListener() {
+		@Override
+		public void compiled(Path source, Path output, long nanos) {
+			events.add("compiled " + source.getFileName());
+		}
+
+		@Override
+		public void failed(Path source, List<String> errors) {
+			events.add("failed " + source.getFileName() + " " + errors);
+		}
+
+		@Override
+		public void deleted(Path source) {
+			events.add("deleted " + source.getFileName());
+		}
+	};
+
+	void startWatching(StylesheetWatcher watcher) throws InterruptedException {
+		CountDownLatch registered = new CountDownLatch(1);
+		thread = new Thread(() -> {
+			try {
+				watcher.watch(registered::countDown);
+			} catch (IOException e) {
+				fail(e);
+			} catch (InterruptedException e) {
+				//Stopped by the test
+			}
+		}, "watcher");
+		thread.start();
+		assertTrue(registered.await(10, TimeUnit.SECONDS));
+	}
+
+	@AfterEach
+	void stopWatching() throws InterruptedException {
+		if (thread != null) {
+			thread.interrupt();
+			thread.join(10_000);
+		}
+	}
+
+	void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "Timed out waiting for the watcher");
+			Thread.sleep(10);
+		}
+	}
+
+	String read(Path file) {
+		try {
+			return Files.readString(file, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	@Test
+	void testCompilesCreatedAndModifiedFilesAndRemovesOutputOfDeletedFiles() throws Exception {
+		Files.writeString(directory.resolve("a.icss"), "p { width: 10px; }\n");
+		StylesheetWatcher watcher = new StylesheetWatcher(directory, listener);
+		watcher.compileAll();
+		assertTrue(read(directory.resolve("a.css")).contains("width: 10px;"));
+		startWatching(watcher);
+
+		Files.writeString(directory.resolve("b.icss"), "a { color: #ff0000; }\n");
+		awaitTrue(() -> {
+			String css = read(directory.resolve("b.css"));
+			return css != null && css.contains("color: #ff0000;");
+		});
+
+		Files.writeString(directory.resolve("a.icss"), "p { width: 20px; }\n");
+		awaitTrue(() -> read(directory.resolve("a.css")).contains("width: 20px;"));
+
+		Files.delete(directory.resolve("b.icss"));
+		awaitTrue(() -> !Files.exists(directory.resolve("b.css")));
+		awaitTrue(() -> events.contains("deleted b.icss"));
+		assertTrue(thread.isAlive());
+	}
+
+	@Test
+	void testKeepsWatchingAfterAFileCannotBeRead() throws Exception {
+		StylesheetWatcher watcher = new StylesheetWatcher(directory, listener);
+		startWatching(watcher);
+
+		//Not valid UTF-8, reading it throws a MalformedInputException
+		Files.write(directory.resolve("broken.icss"), new byte[]{'p', ' ', '{', (byte) 0xff, (byte) 0xfe});
+		Files.writeString(directory.resolve("next.icss"), "p { width: 1px; }\n");
+		awaitTrue(() -> Files.exists(directory.resolve("next.css")));
+		assertFalse(Files.exists(directory.resolve("broken.css")));
+		assertTrue(events.stream().anyMatch(event -> event.startsWith("failed broken.icss")), events.toString());
+
+		//Fixing the broken file compiles it
+		Files.writeString(directory.resolve("broken.icss"), "p { width: 2px; }\n");
+		awaitTrue(() -> Files.exists(directory.resolve("broken.css")));
+		assertTrue(thread.isAlive());
+	}
+
+	@Test
+	void testFileWithErrorsLosesItsOutput() throws Exception {
+		Path source = directory.resolve("a.icss");
+		Files.writeString(source, "p { width: 10px; }\n");
+		StylesheetWatcher watcher = new StylesheetWatcher(directory, listener);
+		watcher.compileAll();
+		assertTrue(Files.exists(directory.resolve("a.css")));
+
+		Files.writeString(source, "p { width: Missing; }\n");
+		assertTrue(watcher.compile(source));
+		assertFalse(Files.exists(directory.resolve("a.css")));
+		assertTrue(events.get(1).startsWith("failed a.icss"), events.toString());
+		assertTrue(events.get(1).contains("niet gedeclareerd"), events.toString());
+
+		//Fixed again, so the output comes back even though it is the same as before
+		Files.writeString(source, "p { width: 10px; }\n");
+		assertTrue(watcher.compile(source));
+		assertTrue(Files.exists(directory.resolve("a.css")));
+		assertFalse(watcher.compile(source));
+		assertEquals(List.of("compiled a.icss", "compiled a.icss"), List.of(events.get(0), events.get(2)));
+	}
+}